@@ -1,6 +1,7 @@
 package com.anthonydaniel.fileflow.auth.controller;
 
 import com.anthonydaniel.fileflow.auth.jwt.JwtTokenProvider;
+import com.anthonydaniel.fileflow.auth.jwt.ValidatedToken;
 import com.anthonydaniel.fileflow.auth.service.AuthenticationService;
 import com.anthonydaniel.fileflow.auth.model.LoginRequest;
 import com.anthonydaniel.fileflow.auth.model.RegisterRequest;
@@ -11,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import javax.naming.AuthenticationException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/auth")
@@ -56,18 +58,18 @@ public class AuthenticationController {
 
             String token = authHeader.replace("Bearer ", "");
 
-            if (!jwtTokenProvider.validateToken(token)) {
+            // single parse, signature is only checked once per request
+            Optional<ValidatedToken> validated = jwtTokenProvider.parse(token);
+            if (validated.isEmpty()) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("valid", false);
                 response.put("message", "Invalid token");
                 return ResponseEntity.ok(response);
             }
 
-            String username = jwtTokenProvider.getUsernameFromToken(token);
-
             Map<String, Object> response = new HashMap<>();
             response.put("valid", true);
-            response.put("username", username);
+            response.put("username", validated.get().username());
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
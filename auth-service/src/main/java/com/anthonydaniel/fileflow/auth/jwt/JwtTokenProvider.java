@@ -1,5 +1,8 @@
 package com.anthonydaniel.fileflow.auth.jwt;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -11,17 +14,26 @@ import java.util.Date;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class JwtTokenProvider {
 
-    // Secret key for signing the token
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    // Key and parser are immutable and thread-safe, so they're built once instead of per call
+    private final Key signingKey;
+    private final JwtParser parser;
 
     // Token expiration time (1 hour)
-    @Value("${jwt.expiration-ms:3600000}")
-    private long jwtExpirationMs;
+    private final long jwtExpirationMs;
+
+    public JwtTokenProvider(@Value("${jwt.secret}") String jwtSecret,
+                            @Value("${jwt.expiration-ms:3600000}") long jwtExpirationMs) {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.jwtExpirationMs = jwtExpirationMs;
+    }
 
     // Create token method
     public String createToken(String username, List<String> roles) {
@@ -39,46 +51,25 @@ public class JwtTokenProvider {
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    // Method to generate a secure signing key
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-    }
-
-    // Validate token method
-    public boolean validateToken(String token) {
+    // Verifies signature + expiry once and returns the claims, empty if the token isn't valid
+    public Optional<ValidatedToken> parse(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            // Log the exception for debugging
-            return false;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            return Optional.of(new ValidatedToken(
+                    claims.getSubject(),
+                    (List<String>) claims.get("roles"),
+                    claims.getExpiration()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
         }
     }
 
-    // Extract email from token
-    public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
-
-    // Extract roles from token
-    public List<String> getRolesFromToken(String token) {
-        return (List<String>) Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("roles");
+    // Validate token method
+    public boolean validateToken(String token) {
+        return parse(token).isPresent();
     }
-}
\ No newline at end of file
+}
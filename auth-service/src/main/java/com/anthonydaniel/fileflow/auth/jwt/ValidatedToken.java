@@ -0,0 +1,8 @@
+package com.anthonydaniel.fileflow.auth.jwt;
+
+import java.util.Date;
+import java.util.List;
+
+// everything callers need from a token, taken from a single signature check
+public record ValidatedToken(String username, List<String> roles, Date expiresAt) {
+}
@@ -0,0 +1,65 @@
+package com.anthonydaniel.fileflow.auth.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of one /auth/validate-token call.
+ *   perRequestKeyAndParser - the old flow: rebuild key + parser, parse to validate, then parse again for the username
+ *   prebuiltParser         - JwtTokenProvider.parse: prebuilt key/parser, one parse
+ *
+ * Run with:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) com.anthonydaniel.fileflow.auth.jwt.JwtTokenProviderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "DC8XFbaWxfIZQUz1ZW9ei1T6IW3cPuq1";
+
+    private JwtTokenProvider provider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        provider = new JwtTokenProvider(SECRET, 3600000);
+        token = provider.createToken("alice", List.of("USER"));
+    }
+
+    @Benchmark
+    public String perRequestKeyAndParser() {
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token);
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String prebuiltParser() {
+        return provider.parse(token).orElseThrow().username();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 
@@ -15,6 +17,7 @@ import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 
 @EnableDiscoveryClient
 @EnableFeignClients
+@EnableScheduling
     public class FileManagementServiceApplication {
 
         public static void main(String[] args) {
@@ -24,8 +27,8 @@ import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 
         @Bean
         @LoadBalanced
-        public RestTemplate restTemplate() {
-            return new RestTemplate();
+        public RestTemplate restTemplate(HttpComponentsClientHttpRequestFactory pooledRequestFactory) {
+            return new RestTemplate(pooledRequestFactory);
         }
     }
 
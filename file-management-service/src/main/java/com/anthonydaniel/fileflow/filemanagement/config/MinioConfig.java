@@ -2,14 +2,21 @@ package com.anthonydaniel.fileflow.filemanagement.config;
 
 import io.minio.BucketExistsArgs;
 import io.minio.MakeBucketArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.errors.ErrorResponseException;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MinioConfig {
     private static final Logger logger = LoggerFactory.getLogger(MinioConfig.class);
@@ -26,6 +33,12 @@ public class MinioConfig {
     @Value("${minio.bucket:fileflow}")
     private String bucketName;
 
+    @Value("${minio.public-endpoint:${minio.endpoint}}")
+    private String publicEndpoint;
+
+    @Value("${minio.region:us-east-1}")
+    private String region;
+
     @Bean
     public MinioClient minioClient() {
         try {
@@ -66,4 +79,40 @@ public class MinioConfig {
             throw new RuntimeException("Failed to initialize MinIO client", e);
         }
     }
-}
\ No newline at end of file
+
+    // used by the streaming upload path to push multipart parts concurrently
+    @Bean
+    public MultipartMinioClient multipartMinioClient(
+            @Value("${file.upload.parallelism:4}") int parallelism) {
+        logger.info("Initializing MinIO multipart client with endpoint: {}", endpoint);
+        // okhttp only allows 5 concurrent requests per host by default
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(64, parallelism * 4));
+        dispatcher.setMaxRequestsPerHost(Math.max(5, parallelism * 4));
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(5, TimeUnit.MINUTES)
+                .writeTimeout(5, TimeUnit.MINUTES)
+                .readTimeout(5, TimeUnit.MINUTES)
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .build();
+
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
+                .build());
+    }
+
+    // presigned download URLs. The region is set so signing needs no round trip to MinIO
+    @Bean
+    public PresignMinioClient presignMinioClient() {
+        logger.info("Initializing MinIO presign client with public endpoint: {}", publicEndpoint);
+        return new PresignMinioClient(MinioClient.builder()
+                .endpoint(publicEndpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build());
+    }
+}
@@ -0,0 +1,75 @@
+package com.anthonydaniel.fileflow.filemanagement.config;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.errors.MinioException;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// MinioClient hides the S3 multipart calls behind putObject, this exposes them so parts can be uploaded in parallel
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public CompletableFuture<String> createUpload(String bucket, String objectName, String contentType,
+                                                  Map<String, String> userMetadata)
+            throws IOException, GeneralSecurityException, MinioException {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        if (userMetadata != null) {
+            userMetadata.forEach((key, value) -> headers.put("x-amz-meta-" + key, value));
+        }
+        return createMultipartUploadAsync(bucket, null, objectName, headers, null)
+                .thenApply(response -> response.result().uploadId());
+    }
+
+    // only the first length bytes of data are sent, so pooled buffers can be reused for the last (short) part
+    public CompletableFuture<Part> uploadPart(String bucket, String objectName, String uploadId,
+                                              int partNumber, byte[] data, int length)
+            throws IOException, GeneralSecurityException, MinioException {
+        return uploadPartAsync(bucket, null, objectName, data, length, uploadId, partNumber, null, null)
+                .thenApply(response -> new Part(partNumber, response.etag()));
+    }
+
+    public CompletableFuture<ObjectWriteResponse> completeUpload(String bucket, String objectName,
+                                                                 String uploadId, Part[] parts)
+            throws IOException, GeneralSecurityException, MinioException {
+        return completeMultipartUploadAsync(bucket, null, objectName, uploadId, parts, null, null);
+    }
+
+    // parts already stored for an upload, follows pagination so uploads with >1000 parts are complete
+    public List<Part> listParts(String bucket, String objectName, String uploadId)
+            throws IOException, GeneralSecurityException, MinioException {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        while (true) {
+            ListPartsResult result = listPartsAsync(bucket, null, objectName, 1000, marker, uploadId, null, null)
+                    .join()
+                    .result();
+            parts.addAll(result.partList());
+            if (!result.isTruncated()) {
+                return parts;
+            }
+            marker = result.nextPartNumberMarker();
+        }
+    }
+
+    public CompletableFuture<Void> abortUpload(String bucket, String objectName, String uploadId)
+            throws IOException, GeneralSecurityException, MinioException {
+        return abortMultipartUploadAsync(bucket, null, objectName, uploadId, null, null)
+                .thenApply(response -> null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.anthonydaniel.fileflow.filemanagement.config;
+
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.http.Method;
+
+import java.time.Duration;
+import java.util.Map;
+
+// signs URLs against the endpoint clients can reach, which isn't always the one this service talks to.
+// Kept out of the context as a MinioClient so it is never injected where the real client is expected.
+public class PresignMinioClient {
+
+    private final MinioClient client;
+
+    public PresignMinioClient(MinioClient client) {
+        this.client = client;
+    }
+
+    // responseHeaders are sent back by MinIO as response-* overrides, the signature covers them
+    public String presignGet(String bucket, String objectName, Duration expiry, Map<String, String> responseHeaders)
+            throws Exception {
+        return presign(Method.GET, bucket, objectName, expiry, responseHeaders);
+    }
+
+    // a whole object, or with partNumber/uploadId one part of a multipart upload
+    public String presignPut(String bucket, String objectName, Duration expiry, Map<String, String> queryParams)
+            throws Exception {
+        return presign(Method.PUT, bucket, objectName, expiry, queryParams);
+    }
+
+    private String presign(Method method, String bucket, String objectName, Duration expiry,
+                           Map<String, String> queryParams) throws Exception {
+        return client.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(method)
+                .bucket(bucket)
+                .object(objectName)
+                .expiry((int) expiry.toSeconds())
+                .extraQueryParams(queryParams)
+                .build());
+    }
+}
@@ -0,0 +1,31 @@
+package com.anthonydaniel.fileflow.filemanagement.config;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.ReconciliationReport;
+import com.anthonydaniel.fileflow.filemanagement.service.StorageReconciler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// /actuator/reconciliation, GET returns the last storage scan report, POST runs a scan now
+@Component
+@ConditionalOnProperty(name = "file.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+@Endpoint(id = "reconciliation")
+public class ReconciliationEndpoint {
+    private final StorageReconciler storageReconciler;
+
+    public ReconciliationEndpoint(StorageReconciler storageReconciler) {
+        this.storageReconciler = storageReconciler;
+    }
+
+    @ReadOperation
+    public ReconciliationReport report() {
+        return storageReconciler.getLastReport();
+    }
+
+    @WriteOperation
+    public ReconciliationReport scan() {
+        return storageReconciler.scan();
+    }
+}
@@ -1,14 +1,80 @@
 package com.anthonydaniel.fileflow.filemanagement.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
+/*
+ * Both RestTemplates (metadata-service and the load balanced one used for auth-service) share one pooled
+ * Apache HttpClient so connections are kept alive between calls instead of opened per request, and a
+ * stalled downstream service fails after read-timeout rather than holding the request thread forever.
+ */
 @Configuration
 public class RestTemplateConfig {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpConnectionManager(
+            @Value("${http.client.max-total:200}") int maxTotal,
+            @Value("${http.client.max-per-route:50}") int maxPerRoute,
+            @Value("${http.client.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${http.client.read-timeout:10s}") Duration readTimeout) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        // pooled connections the server may have dropped are checked before reuse
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public CloseableHttpClient pooledHttpClient(
+            PoolingHttpClientConnectionManager httpConnectionManager,
+            @Value("${http.client.read-timeout:10s}") Duration readTimeout,
+            @Value("${http.client.pool-timeout:2s}") Duration poolTimeout,
+            @Value("${http.client.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory pooledRequestFactory(CloseableHttpClient pooledHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(pooledHttpClient);
+    }
+
+    // leased/available/pending/max gauges under httpcomponents.httpclient.pool.* in /actuator/metrics
+    @Bean
+    public MeterBinder httpConnectionPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(httpConnectionManager, "http-client");
+    }
+
     // needed to add this - otherwise File Service would try to use Eureka to find minIO
     @Bean(name = "metadataRestTemplate")
-    public RestTemplate metadataRestTemplate() {
-        return new RestTemplate();
+    public RestTemplate metadataRestTemplate(HttpComponentsClientHttpRequestFactory pooledRequestFactory) {
+        return new RestTemplate(pooledRequestFactory);
     }
-}
\ No newline at end of file
+}
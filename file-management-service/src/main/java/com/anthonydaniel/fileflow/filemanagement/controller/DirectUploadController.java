@@ -0,0 +1,98 @@
+package com.anthonydaniel.fileflow.filemanagement.controller;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.DirectUploadTicket;
+import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.anthonydaniel.fileflow.filemanagement.service.AuthenticationService;
+import com.anthonydaniel.fileflow.filemanagement.service.DirectUploadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// direct upload protocol: POST ticket -> PUT the bytes to MinIO with the presigned urls -> POST complete
+@RestController
+@RequestMapping("/files/direct-uploads")
+public class DirectUploadController {
+    private static final Logger log = LoggerFactory.getLogger(DirectUploadController.class);
+
+    private final DirectUploadService directUploadService;
+    private final AuthenticationService authenticationService;
+
+    public DirectUploadController(DirectUploadService directUploadService,
+                                  AuthenticationService authenticationService) {
+        this.directUploadService = directUploadService;
+        this.authenticationService = authenticationService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createTicket(@RequestBody CreateUploadSessionRequest request,
+                                          @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            DirectUploadTicket ticket = directUploadService.createTicket(request, validation.getUsername());
+            // the urls let anyone write the object until they expire
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .cacheControl(CacheControl.noStore())
+                    .body(ticket);
+        } catch (Exception e) {
+            return errorResponse("creating upload ticket", e);
+        }
+    }
+
+    @PostMapping("/{ticketId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String ticketId,
+                                      @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            Integer fileId = directUploadService.complete(ticketId, validation.getUsername());
+            return ResponseEntity.ok("File uploaded successfully. FileID: " + fileId);
+        } catch (Exception e) {
+            return errorResponse("completing upload", e);
+        }
+    }
+
+    @DeleteMapping("/{ticketId}")
+    public ResponseEntity<?> abort(@PathVariable String ticketId,
+                                   @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            directUploadService.abort(ticketId, validation.getUsername());
+            return ResponseEntity.ok("Upload aborted");
+        } catch (Exception e) {
+            return errorResponse("aborting upload", e);
+        }
+    }
+
+    private ResponseEntity<String> errorResponse(String action, Exception e) {
+        log.error("Error {}: {}", action, e.getMessage(), e);
+        if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        if (e instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        if (e.getMessage() != null && e.getMessage().contains("permission")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+        if (e.getMessage() != null && e.getMessage().contains("not found")) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error " + action + ": " + e.getMessage());
+    }
+}
@@ -1,27 +1,38 @@
 package com.anthonydaniel.fileflow.filemanagement.controller;
 
 import com.anthonydaniel.fileflow.filemanagement.config.MinioConfig;
+import com.anthonydaniel.fileflow.filemanagement.dto.BatchUploadResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.DeleteResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import com.anthonydaniel.fileflow.filemanagement.dto.PresignedUrl;
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
 import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.anthonydaniel.fileflow.filemanagement.service.ArchiveService;
 import com.anthonydaniel.fileflow.filemanagement.service.AuthenticationService;
+import com.anthonydaniel.fileflow.filemanagement.service.BatchUploadService;
 import com.anthonydaniel.fileflow.filemanagement.service.FileService;
-import okio.FileMetadata;
-import org.apache.hc.core5.http.io.entity.FileEntity;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.StreamingUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,18 +42,40 @@ public class FileController {
 
     private final FileService fileService;
     private static final Logger log = LoggerFactory.getLogger(FileController.class);
-    private final RestTemplate metadataRestTemplate;
-    private final String metadataServiceUrl;
+    // metadata-service rejects bigger batches
+    private static final int MAX_ACCESS_BATCH = 1000;
+    private static final int MAX_DELETE_BATCH = 10000;
+    // request attributes of Tomcat's sendfile support (see its DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private final MetadataClient metadataClient;
+
+    // operator setting only, an unknown value fails startup instead of reaching a request
+    @Value("${file.download.mode:stream}")
+    private DownloadMode downloadMode;
 
 
     @Autowired
     private AuthenticationService authenticationService;
 
     @Autowired
-    public FileController(FileService fileService, RestTemplate metadataRestTemplate,  @Value("${metadata.service.url:http://default-metadata-service}") String metadataServiceUrl) {
+    private StreamingUploadService streamingUploadService;
+
+    @Autowired
+    private BatchUploadService batchUploadService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private ObjectCache objectCache;
+
+    @Autowired
+    public FileController(FileService fileService, MetadataClient metadataClient) {
         this.fileService = fileService;
-        this.metadataRestTemplate = metadataRestTemplate;
-        this.metadataServiceUrl = metadataServiceUrl;
+        this.metadataClient = metadataClient;
 
     }
 
@@ -85,10 +118,38 @@ public class FileController {
         }
     }
 
+    // same as /upload but the body is streamed to MinIO in parallel parts instead of spooled by the container
+    @PostMapping("/upload-stream")
+    public ResponseEntity<String> uploadFileStream(HttpServletRequest request,
+                                                   @RequestHeader("Authorization") String authHeader) {
+        log.info("Streaming upload request received, contentLength={}", request.getContentLengthLong());
+
+        try {
+            if (!StreamingUploadService.isMultipart(request)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Expected a multipart/form-data request");
+            }
+
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(validation.getMessage());
+            }
+
+            String response = streamingUploadService.uploadStream(request, validation.getUsername());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error streaming file upload: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error uploading file: " + e.getMessage());
+        }
+    }
+
+    // files are uploaded concurrently, each one gets its own result so one bad file doesn't fail the batch
     @PostMapping("/upload-multiple")
-    public ResponseEntity<String> uploadMultipleFiles(@RequestParam("files") List<MultipartFile> files,
-                                                      @RequestParam(value="tags", required=false) List<String> tags,
-                                                      @RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> uploadMultipleFiles(@RequestParam("files") List<MultipartFile> files,
+                                                 @RequestParam(value="tags", required=false) List<String> tags,
+                                                 @RequestHeader("Authorization") String authHeader) {
         try {
             // validate token
             TokenValidationResponse validation = authenticationService.validateToken(authHeader);
@@ -97,10 +158,12 @@ public class FileController {
                         .body(validation.getMessage());
             }
 
-            for (MultipartFile file : files) {
-                fileService.saveFile(file, validation.getUsername(), tags);
-            }
-            return ResponseEntity.ok("Files uploaded successfully");
+            List<String> processedTags = tags != null ? tags : Collections.emptyList();
+            List<BatchUploadResult> results = batchUploadService.uploadAll(files, validation.getUsername(), processedTags);
+
+            boolean allUploaded = results.stream().allMatch(BatchUploadResult::isSuccess);
+            return ResponseEntity.status(allUploaded ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                    .body(results);
         } catch (Exception e) {
             log.error("Error uploading multiple files: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -111,7 +174,9 @@ public class FileController {
     @GetMapping("/download/{fileId}")
     public ResponseEntity<?> downloadFile(
             @PathVariable Integer fileId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestHeader HttpHeaders requestHeaders,
+            HttpServletRequest request) {
         log.info("Received download request for fileId: {}", fileId);
 
         try {
@@ -135,46 +200,101 @@ public class FileController {
             String username = validation.getUsername();
             log.info("Retrieved username: {} from token validation", username);
 
+            // resolved once and reused for the permission check, object name and Content-Disposition
+            FileMetadata metadata;
+            try {
+                metadata = fileService.getMetadata(fileId);
+            } catch (RuntimeException e) {
+                log.info("Could not resolve metadata for file {}: {}", fileId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("You don't have permission to access this file");
+            }
+
             // check file access permission
-            boolean hasPermission = fileService.checkFileAccessPermission(fileId, username, authHeader);
+            boolean hasPermission = fileService.checkFileAccessPermission(metadata, username, authHeader);
             if (!hasPermission) {
                 log.info("No permission for user {} to access file {}", username, fileId);
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body("You don't have permission to access this file");
             }
 
+            if (downloadMode != DownloadMode.STREAM) {
+                return presignedDownload(metadata, username);
+            }
+
             try {
                 log.info("Attempting to retrieve file {} for user {}", fileId, username);
-                Resource file = fileService.getFile(username, fileId);
+                StoredObject object = fileService.statFile(metadata);
+                String etag = "\"" + stripQuotes(object.etag()) + "\"";
+                long lastModified = object.lastModified().toInstant().toEpochMilli();
+
+                // conditional GET, client already has this version
+                if (isNotModified(requestHeaders, etag, lastModified)) {
+                    log.info("File {} not modified for user {}", fileId, username);
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(etag)
+                            .lastModified(lastModified)
+                            .build();
+                }
 
-                // get the original filename from metadata service for Content-Disposition header
-                String query = """
-                    query {
-                        getMetadataById(id: %d) {
-                            fileName
+                ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+                long offset = 0;
+                long length = object.size();
+
+                HttpRange range = resolveRange(requestHeaders, etag, lastModified);
+                if (range != null) {
+                    try {
+                        offset = range.getRangeStart(object.size());
+                        length = range.getRangeEnd(object.size()) - offset + 1;
+                        // HttpRange clamps the end to the size but leaves a start past it alone
+                        if (offset >= object.size() || length <= 0) {
+                            throw new IllegalArgumentException("Range starts after the end of the file");
                         }
+                    } catch (IllegalArgumentException e) {
+                        log.info("Unsatisfiable range {} for file {}", requestHeaders.getFirst(HttpHeaders.RANGE), fileId);
+                        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + object.size())
+                                .build();
                     }
-                    """.formatted(fileId);
+                    builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                            .header(HttpHeaders.CONTENT_RANGE,
+                                    "bytes " + offset + "-" + (offset + length - 1) + "/" + object.size());
+                }
 
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("query", query);
+                builder
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + object.fileName() + "\"")
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                        .eTag(etag)
+                        .lastModified(lastModified)
+                        .contentType(resolveContentType(object))
+                        .contentLength(length);
+
+                // the ETag is part of the cache key, a hit is the version MinIO just reported
+                Optional<Path> cached = objectCache.find(object);
+                if (cached.isPresent()) {
+                    log.info("Serving file: {} for user: {} from local cache (offset {}, length {})",
+                            fileId, username, offset, length);
+                    return serveCached(builder, cached.get(), offset, length, request);
+                }
 
-                ResponseEntity<Map<String, Object>> response = metadataRestTemplate.exchange(
-                        metadataServiceUrl + "/graphql",
-                        HttpMethod.POST,
-                        new HttpEntity<>(requestBody),
-                        new ParameterizedTypeReference<Map<String, Object>>() {}
-                );
+                log.info("Successfully retrieved file: {} for user: {} (offset {}, length {})",
+                        fileId, username, offset, length);
 
-                Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-                Map<String, Object> metadata = (Map<String, Object>) data.get("getMetadataById");
-                String fileName = (String) metadata.get("fileName");
+                // whole-object downloads are coalesced, concurrent requests share one MinIO read which also
+                // fills the local cache
+                if (range == null) {
+                    StreamingResponseBody body = out -> fileService.download(object, out);
+                    return builder.body(body);
+                }
 
-                log.info("Successfully retrieved file: {} for user: {}", fileId, username);
+                // bytes go straight from MinIO to the servlet output, nothing is buffered whole. The stream is
+                // only opened once the body runs, so a request that never gets there holds no connection
+                long rangeOffset = offset;
+                long rangeLength = length;
+                StreamingResponseBody body = out ->
+                        objectCache.copy(fileService.openFile(object, rangeOffset, rangeLength), out);
 
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                        .body(file);
+                return builder.body(body);
             } catch (RuntimeException e) {
                 log.error("Failed to retrieve file: {} for user: {}. Error: {}", fileId, username, e.getMessage());
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -187,8 +307,121 @@ public class FileController {
         }
     }
 
+    // Tomcat's sendfile moves the bytes from the page cache to the socket without them entering the JVM,
+    // other containers get FileChannel.transferTo into the response stream
+    private ResponseEntity<?> serveCached(ResponseEntity.BodyBuilder builder, Path path, long offset, long length,
+                                          HttpServletRequest request) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, offset);
+            request.setAttribute(SENDFILE_END, offset + length);
+            objectCache.recordServed(true, length);
+            return builder.build();
+        }
+        StreamingResponseBody body = out -> objectCache.transfer(path, offset, length, out);
+        return builder.body(body);
+    }
+
+    // MinIO serves the bytes, ranges and conditional requests included, we only authorised the request
+    private ResponseEntity<?> presignedDownload(FileMetadata metadata, String username) {
+        PresignedUrl presigned;
+        try {
+            presigned = fileService.presignDownload(metadata);
+        } catch (RuntimeException e) {
+            log.error("Failed to presign file: {} for user: {}. Error: {}", metadata.id(), username, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Could not create download URL: " + e.getMessage());
+        }
+        log.info("Handing out presigned URL for file: {} to user: {}", metadata.id(), username);
+
+        // the URL is a credential until it expires, nobody in between should keep it
+        CacheControl noStore = CacheControl.noStore();
+        if (downloadMode == DownloadMode.REDIRECT) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(presigned.url()))
+                    .cacheControl(noStore)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(noStore)
+                .body(presigned);
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are sent (RFC 9110 13.2.2)
+    private boolean isNotModified(HttpHeaders requestHeaders, String etag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            for (String candidate : ifNoneMatch) {
+                if ("*".equals(candidate) || stripWeak(candidate).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        // http dates have second precision
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // returns the single range to serve, or null to send the whole file
+    private HttpRange resolveRange(HttpHeaders requestHeaders, String etag, long lastModified) {
+        List<HttpRange> ranges;
+        try {
+            ranges = requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            // malformed Range header is ignored
+            log.debug("Ignoring malformed Range header: {}", e.getMessage());
+            return null;
+        }
+        // multipart/byteranges isn't supported, a full 200 is a valid answer
+        if (ranges.size() != 1) {
+            return null;
+        }
+
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"")) {
+                // If-Range needs a strong match
+                if (!ifRange.equals(etag)) {
+                    return null;
+                }
+            } else if (ifRange.startsWith("W/")) {
+                return null;
+            } else {
+                long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+                if (ifRangeDate == -1 || ifRangeDate / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            }
+        }
+        return ranges.get(0);
+    }
+
+    private String stripQuotes(String etag) {
+        return etag.startsWith("\"") && etag.endsWith("\"") && etag.length() > 1
+                ? etag.substring(1, etag.length() - 1)
+                : etag;
+    }
+
+    private String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private MediaType resolveContentType(StoredObject object) {
+        try {
+            if (object.contentType() != null) {
+                return MediaType.parseMediaType(object.contentType());
+            }
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Stored content type {} is invalid, falling back to octet-stream", object.contentType());
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
     @GetMapping("/files-by-tag")
     public ResponseEntity<?> getFilesByTag(@RequestParam("tag") String tag,
+                                           @RequestParam(value = "first", required = false) Integer first,
+                                           @RequestParam(value = "after", required = false) String after,
                                            @RequestHeader("Authorization") String authHeader) {
         try {
             // validate token
@@ -198,35 +431,102 @@ public class FileController {
                         .body(validation.getMessage());
             }
 
-            // query our metadata service for files with the given tag
-            String query = """
-            query {
-                getFilesByTag(tag: "%s") {
-                    id
-                    fileName
-                    tags
-                }
+            // only files the caller owns or has been shared, metadata-service applies the check in the query
+            FilePage page = metadataClient.getFilesByTag(tag, validation.getUsername(), first, after, authHeader);
+
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            log.error("Error querying files by tag: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error querying files: " + e.getMessage());
+        }
+    }
+
+    // fileIds or a tag, as query or form parameters (POST for id lists too long for a URL)
+    @RequestMapping(value = "/archive", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<?> downloadArchive(@RequestParam(value = "fileIds", required = false) List<Integer> fileIds,
+                                             @RequestParam(value = "tag", required = false) String tag,
+                                             @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(validation.getMessage());
+            }
+
+            List<FileMetadata> files;
+            try {
+                files = archiveService.resolveFiles(fileIds, tag, validation.getUsername(), authHeader);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            log.info("Streaming archive of {} files for user {}", files.size(), validation.getUsername());
+
+            String archiveName = tag != null && !tag.isBlank() ? tag : "files";
+            StreamingResponseBody body = out -> archiveService.writeArchive(files, out);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(archiveName + ".zip")
+                            .build()
+                            .toString())
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .body(body);
+        } catch (Exception e) {
+            log.error("Error creating archive: {}", e.getMessage(), e);
+            if (e.getMessage() != null && e.getMessage().contains("permission")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
             }
-        """.formatted(tag);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error creating archive: " + e.getMessage());
+        }
+    }
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", query);
+    // download permission for a page of files at once, fileId -> true/false, costs one metadata-service call
+    @GetMapping("/access")
+    public ResponseEntity<?> getFileAccess(@RequestParam("fileIds") List<Integer> fileIds,
+                                           @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(validation.getMessage());
+            }
+            if (fileIds.size() > MAX_ACCESS_BATCH) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("At most " + MAX_ACCESS_BATCH + " fileIds per request");
+            }
 
-            ResponseEntity<Map<String, Object>> response = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody),
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+            return ResponseEntity.ok(fileService.checkFileAccessPermissions(fileIds, validation.getUsername(), authHeader));
+        } catch (Exception e) {
+            log.error("Error checking file access: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error checking file access: " + e.getMessage());
+        }
+    }
 
-            Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-            List<Map<String, Object>> files = (List<Map<String, Object>>) data.get("getFilesByTag");
+    // bulk delete, body is a JSON array of fileIds, returns one result per id (207 when some weren't deleted)
+    @DeleteMapping
+    public ResponseEntity<?> deleteFiles(@RequestBody List<Integer> fileIds,
+                                         @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(validation.getMessage());
+            }
+            if (fileIds.size() > MAX_DELETE_BATCH) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("At most " + MAX_DELETE_BATCH + " fileIds per request");
+            }
 
-            return ResponseEntity.ok(files);
+            List<DeleteResult> results = fileService.deleteFiles(fileIds, validation.getUsername(), authHeader);
+            boolean allDeleted = results.stream().allMatch(DeleteResult::deleted);
+            return ResponseEntity.status(allDeleted ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                    .body(results);
         } catch (Exception e) {
-            log.error("Error querying files by tag: {}", e.getMessage(), e);
+            log.error("Error deleting files: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error querying files: " + e.getMessage());
+                    .body("Error deleting files: " + e.getMessage());
         }
     }
 
@@ -281,4 +581,12 @@ public class FileController {
                     .body("Error processing request: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // stream = bytes go through this service, redirect = 302 to a presigned MinIO URL,
+    // url = the presigned URL is returned as JSON for clients that fetch it themselves
+    public enum DownloadMode {
+        STREAM,
+        REDIRECT,
+        URL
+    }
+}
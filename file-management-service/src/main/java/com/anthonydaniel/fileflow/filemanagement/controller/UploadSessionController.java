@@ -0,0 +1,138 @@
+package com.anthonydaniel.fileflow.filemanagement.controller;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSessionStatus;
+import com.anthonydaniel.fileflow.filemanagement.service.AuthenticationService;
+import com.anthonydaniel.fileflow.filemanagement.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+// resumable upload protocol: POST session -> PUT chunks (retry any that fail) -> POST complete
+@RestController
+@RequestMapping("/files/uploads")
+public class UploadSessionController {
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionController.class);
+
+    private final ResumableUploadService resumableUploadService;
+    private final AuthenticationService authenticationService;
+
+    public UploadSessionController(ResumableUploadService resumableUploadService,
+                                   AuthenticationService authenticationService) {
+        this.resumableUploadService = resumableUploadService;
+        this.authenticationService = authenticationService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createSession(@RequestBody CreateUploadSessionRequest request,
+                                           @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            UploadSession session = resumableUploadService.createSession(request, validation.getUsername());
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                    "sessionId", session.sessionId(),
+                    "fileId", session.fileId(),
+                    "chunkSize", session.chunkSize(),
+                    "totalChunks", session.totalChunks()));
+        } catch (Exception e) {
+            return errorResponse("creating upload session", e);
+        }
+    }
+
+    // offset is redundant with index but lets us reject a client that got its chunk maths wrong
+    @PutMapping("/{sessionId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String sessionId,
+                                         @PathVariable int index,
+                                         @RequestParam("offset") long offset,
+                                         @RequestHeader("Authorization") String authHeader,
+                                         HttpServletRequest request) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            UploadSessionStatus status = resumableUploadService.uploadChunk(sessionId, validation.getUsername(),
+                    index, offset, request.getContentLengthLong(), request.getInputStream());
+            return ResponseEntity.ok(status);
+        } catch (Exception e) {
+            return errorResponse("uploading chunk", e);
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<?> getStatus(@PathVariable String sessionId,
+                                       @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            return ResponseEntity.ok(resumableUploadService.getStatus(sessionId, validation.getUsername()));
+        } catch (Exception e) {
+            return errorResponse("reading upload session", e);
+        }
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String sessionId,
+                                      @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            Integer fileId = resumableUploadService.complete(sessionId, validation.getUsername());
+            return ResponseEntity.ok("File uploaded successfully. FileID: " + fileId);
+        } catch (Exception e) {
+            return errorResponse("completing upload", e);
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abort(@PathVariable String sessionId,
+                                   @RequestHeader("Authorization") String authHeader) {
+        try {
+            TokenValidationResponse validation = authenticationService.validateToken(authHeader);
+            if (!validation.isValid()) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(validation.getMessage());
+            }
+
+            resumableUploadService.abort(sessionId, validation.getUsername());
+            return ResponseEntity.ok("Upload aborted");
+        } catch (Exception e) {
+            return errorResponse("aborting upload", e);
+        }
+    }
+
+    private ResponseEntity<String> errorResponse(String action, Exception e) {
+        log.error("Error {}: {}", action, e.getMessage(), e);
+        if (e instanceof IllegalArgumentException) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        if (e instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        if (e.getMessage() != null && e.getMessage().contains("permission")) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+        if (e.getMessage() != null && e.getMessage().contains("not found")) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("Error " + action + ": " + e.getMessage());
+    }
+}
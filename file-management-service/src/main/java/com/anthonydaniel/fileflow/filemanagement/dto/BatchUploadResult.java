@@ -0,0 +1,20 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+// outcome for one file of /files/upload-multiple, exactly one of fileId and error is set
+public record BatchUploadResult(
+        String fileName,
+        Integer fileId,
+        String error
+) {
+    public static BatchUploadResult uploaded(String fileName, Integer fileId) {
+        return new BatchUploadResult(fileName, fileId, null);
+    }
+
+    public static BatchUploadResult failed(String fileName, String error) {
+        return new BatchUploadResult(fileName, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+public record CreateUploadSessionRequest(
+        String fileName,
+        Long fileSize,
+        String contentType,
+        Integer chunkSize,
+        List<String> tags
+) {
+}
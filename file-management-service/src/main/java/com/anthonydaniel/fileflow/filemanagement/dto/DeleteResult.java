@@ -0,0 +1,16 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+// outcome for one id of DELETE /files, error is set when it wasn't deleted
+public record DeleteResult(
+        Integer fileId,
+        boolean deleted,
+        String error
+) {
+    public static DeleteResult deleted(Integer fileId) {
+        return new DeleteResult(fileId, true, null);
+    }
+
+    public static DeleteResult failed(Integer fileId, String error) {
+        return new DeleteResult(fileId, false, error);
+    }
+}
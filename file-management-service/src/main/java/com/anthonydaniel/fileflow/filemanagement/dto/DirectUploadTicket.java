@@ -0,0 +1,14 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+// PUT the file to the single url, or part i (partSize bytes, the last one shorter) to urls[i], then complete
+public record DirectUploadTicket(
+        String ticketId,
+        Integer fileId,
+        long partSize,
+        List<String> urls,
+        Instant expiresAt
+) {
+}
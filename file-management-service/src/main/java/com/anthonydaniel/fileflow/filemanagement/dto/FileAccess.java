@@ -0,0 +1,9 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+// metadata-service's access decision for one file, owner is null when the file doesn't exist
+public record FileAccess(
+        Integer fileId,
+        String owner,
+        boolean hasAccess
+) {
+}
@@ -0,0 +1,9 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+// metadata-service's answer for one id of beginDeleteBatch, file when the delete was started, error otherwise
+public record FileDeletion(
+        Integer fileId,
+        FileMetadata file,
+        String error
+) {
+}
@@ -0,0 +1,12 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// metadata-service's FileInput, one row of a saveMetadataBatch mutation
+public record FileInput(
+        String fileName,
+        long fileSize,
+        String owner,
+        List<String> tags
+) {
+}
@@ -0,0 +1,17 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+// an outbox entry from metadata-service, a storage operation on file that was started but never confirmed.
+// Resumable and direct uploads also carry their session and MinIO multipart upload id
+public record FileIntent(
+        Integer id,
+        Action action,
+        String createdAt,
+        FileMetadata file,
+        String sessionId,
+        String uploadId
+) {
+    public enum Action {
+        UPLOAD,
+        DELETE
+    }
+}
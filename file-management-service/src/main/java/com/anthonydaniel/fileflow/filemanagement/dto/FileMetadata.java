@@ -0,0 +1,29 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// the parts of metadata-service's FileMetadata this service needs
+public record FileMetadata(
+        Integer id,
+        String fileName,
+        String owner,
+        Long fileSize,
+        List<String> tags,
+        String contentHash
+) {
+    /*
+     * owner/fileId_fileName, the layout every per-file object uses. Deduplicated uploads (contentHash set)
+     * share blobs/<sha256> with every other file of the same content.
+     */
+    public String objectName() {
+        if (contentHash != null) {
+            return "blobs/" + contentHash;
+        }
+        return objectName(owner, id, fileName);
+    }
+
+    // for uploads that only have the row's id yet, StorageReconciler and the delete path rely on this layout
+    public static String objectName(String owner, Integer id, String fileName) {
+        return String.format("%s/%d_%s", owner, id, fileName);
+    }
+}
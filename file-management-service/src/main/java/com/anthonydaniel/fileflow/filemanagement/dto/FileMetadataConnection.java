@@ -0,0 +1,15 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// a page of metadata-service's Relay style FileMetadataConnection
+public record FileMetadataConnection(
+        List<Edge> edges,
+        PageInfo pageInfo
+) {
+    public record Edge(String cursor, FileMetadata node) {
+    }
+
+    public record PageInfo(boolean hasNextPage, String endCursor) {
+    }
+}
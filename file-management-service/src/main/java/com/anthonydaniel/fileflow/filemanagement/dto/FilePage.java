@@ -0,0 +1,22 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// one page of a file listing, pass nextCursor back as `after` to continue while hasNext is true
+public record FilePage(
+        List<FileMetadata> files,
+        String nextCursor,
+        boolean hasNext
+) {
+    public static FilePage of(FileMetadataConnection connection) {
+        if (connection == null) {
+            return new FilePage(List.of(), null, false);
+        }
+        List<FileMetadata> files = connection.edges() == null ? List.of()
+                : connection.edges().stream().map(FileMetadataConnection.Edge::node).toList();
+        FileMetadataConnection.PageInfo pageInfo = connection.pageInfo();
+        return pageInfo == null
+                ? new FilePage(files, null, false)
+                : new FilePage(files, pageInfo.endCursor(), pageInfo.hasNextPage());
+    }
+}
@@ -0,0 +1,11 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.Map;
+
+// body of a POST /graphql, the query text is a constant and everything request specific goes in variables
+public record GraphQlRequest(
+        String query,
+        String operationName,
+        Map<String, Object> variables
+) {
+}
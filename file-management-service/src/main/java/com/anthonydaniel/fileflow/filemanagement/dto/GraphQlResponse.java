@@ -0,0 +1,13 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+import java.util.Map;
+
+// every metadata operation selects a single root field, so data is keyed by that field name
+public record GraphQlResponse<T>(
+        Map<String, T> data,
+        List<GraphQlError> errors
+) {
+    public record GraphQlError(String message) {
+    }
+}
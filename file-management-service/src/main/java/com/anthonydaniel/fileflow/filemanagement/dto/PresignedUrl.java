@@ -0,0 +1,10 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.time.Instant;
+
+// a short-lived GET URL straight to MinIO, handed out instead of streaming the file through us
+public record PresignedUrl(
+        String url,
+        Instant expiresAt
+) {
+}
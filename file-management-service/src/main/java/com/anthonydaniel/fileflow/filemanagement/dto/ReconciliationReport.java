@@ -0,0 +1,20 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * Result of one MinIO vs metadata scan. orphanObjects are objects no metadata row points at (they only
+ * cost storage), missingObjects are committed rows whose object is gone (they show up in listings but
+ * can't be downloaded). Both lists are capped, the counts are not.
+ */
+public record ReconciliationReport(
+        Instant finishedAt,
+        long objectsScanned,
+        long rowsScanned,
+        long orphanObjectCount,
+        List<String> orphanObjects,
+        long missingObjectCount,
+        List<Integer> missingObjects
+) {
+}
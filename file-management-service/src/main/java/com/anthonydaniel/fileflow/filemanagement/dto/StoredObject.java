@@ -0,0 +1,15 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.time.ZonedDateTime;
+
+// what we know about a file in MinIO before streaming it (from metadata + statObject)
+public record StoredObject(
+        Integer fileId,
+        String fileName,
+        String objectName,
+        long size,
+        String etag,
+        ZonedDateTime lastModified,
+        String contentType
+) {
+}
@@ -0,0 +1,31 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// server side state of a resumable upload, stored as json next to the files in MinIO
+public record UploadSession(
+        String sessionId,
+        Integer fileId,
+        String owner,
+        String fileName,
+        String contentType,
+        long fileSize,
+        int chunkSize,
+        String objectName,
+        String uploadId,
+        List<String> tags,
+        long createdAt
+) {
+    public int totalChunks() {
+        // an empty file is still uploaded as one (empty) chunk
+        return fileSize == 0 ? 1 : (int) ((fileSize + chunkSize - 1) / chunkSize);
+    }
+
+    public long chunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public int chunkLength(int index) {
+        return (int) Math.min(chunkSize, fileSize - chunkOffset(index));
+    }
+}
@@ -0,0 +1,16 @@
+package com.anthonydaniel.fileflow.filemanagement.dto;
+
+import java.util.List;
+
+// what the client needs to resume: which chunks MinIO already has
+public record UploadSessionStatus(
+        String sessionId,
+        Integer fileId,
+        String fileName,
+        long fileSize,
+        int chunkSize,
+        int totalChunks,
+        List<Integer> uploadedChunks,
+        long bytesUploaded
+) {
+}
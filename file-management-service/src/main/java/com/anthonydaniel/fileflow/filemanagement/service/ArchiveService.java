@@ -0,0 +1,179 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+ * Backs /files/archive: a ZIP of many files written straight to the response while it is being built.
+ * The selection and its access check are resolved up front in batches, so a request either gets every
+ * file it asked for or fails before anything is sent. The next `prefetch` objects are opened on virtual
+ * threads while the current one is copied, so MinIO's time to first byte overlaps with the transfer
+ * instead of adding up per file. Nothing is held in memory beyond the pooled copy buffer.
+ */
+@Service
+public class ArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+    // metadata-service caps accessibleFiles at 1000 ids and tag pages at 100 files
+    private static final int ACCESS_CHUNK = 1000;
+    private static final int TAG_PAGE = 100;
+
+    // deflating these only burns CPU, they are written with compression level 0
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "m4a", "aac", "ogg", "flac", "mp4", "m4v", "mov", "mkv", "avi", "webm",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
+
+    private final FileService fileService;
+    private final MetadataClient metadataClient;
+    private final TransferBufferPool transferBufferPool;
+    private final int prefetch;
+    private final int maxFiles;
+
+    public ArchiveService(FileService fileService,
+                          MetadataClient metadataClient,
+                          TransferBufferPool transferBufferPool,
+                          @Value("${file.archive.prefetch:4}") int prefetch,
+                          @Value("${file.archive.max-files:10000}") int maxFiles) {
+        this.fileService = fileService;
+        this.metadataClient = metadataClient;
+        this.transferBufferPool = transferBufferPool;
+        this.prefetch = Math.max(prefetch, 1);
+        this.maxFiles = maxFiles;
+    }
+
+    // exactly one of fileIds and tag, every file must be readable by username
+    public List<FileMetadata> resolveFiles(List<Integer> fileIds, String tag, String username, String authHeader) {
+        boolean byIds = fileIds != null && !fileIds.isEmpty();
+        boolean byTag = tag != null && !tag.isBlank();
+        if (byIds == byTag) {
+            throw new IllegalArgumentException("Either fileIds or tag is required");
+        }
+        return byIds ? resolveIds(fileIds, username, authHeader) : resolveTag(tag, username, authHeader);
+    }
+
+    private List<FileMetadata> resolveIds(List<Integer> fileIds, String username, String authHeader) {
+        List<Integer> ids = fileIds.stream().distinct().toList();
+        if (ids.size() > maxFiles) {
+            throw new IllegalArgumentException("Too many files, at most " + maxFiles + " per archive");
+        }
+        List<FileMetadata> files = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ACCESS_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + ACCESS_CHUNK, ids.size()));
+            files.addAll(metadataClient.getAccessibleFiles(chunk, username, authHeader));
+        }
+        if (files.size() != ids.size()) {
+            Set<Integer> found = new HashSet<>();
+            files.forEach(file -> found.add(file.id()));
+            List<Integer> missing = ids.stream().filter(id -> !found.contains(id)).limit(10).toList();
+            throw new RuntimeException("You don't have permission to access files " + missing);
+        }
+        return files;
+    }
+
+    private List<FileMetadata> resolveTag(String tag, String username, String authHeader) {
+        List<FileMetadata> files = new ArrayList<>();
+        String after = null;
+        FilePage page;
+        do {
+            page = metadataClient.getFilesByTag(tag, username, TAG_PAGE, after, authHeader);
+            files.addAll(page.files());
+            if (files.size() > maxFiles) {
+                throw new IllegalArgumentException("Too many files, at most " + maxFiles + " per archive");
+            }
+            after = page.nextCursor();
+        } while (page.hasNext() && after != null);
+        return files;
+    }
+
+    // a failure after the first byte can only be reported by cutting the stream, the IOException does that
+    public void writeArchive(List<FileMetadata> files, OutputStream out) throws IOException {
+        Deque<Future<InputStream>> opened = new ArrayDeque<>();
+        Set<String> names = new HashSet<>();
+        int next = 0;
+        long total = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                ZipOutputStream zip = new ZipOutputStream(out);
+                for (FileMetadata file : files) {
+                    while (next < files.size() && opened.size() < prefetch) {
+                        FileMetadata ahead = files.get(next++);
+                        opened.add(executor.submit(() -> fileService.openFile(ahead)));
+                    }
+
+                    zip.setLevel(isCompressed(file.fileName()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    zip.putNextEntry(new ZipEntry(entryName(file, names)));
+                    try (InputStream in = await(opened.poll(), file)) {
+                        total += transferBufferPool.transfer(in, zip);
+                    }
+                    zip.closeEntry();
+                }
+                zip.finish();
+                zip.flush();
+                logger.info("Streamed archive of {} files ({} bytes uncompressed)", files.size(), total);
+            } finally {
+                // streams opened ahead of a failure still hold MinIO connections
+                for (Future<InputStream> pending : opened) {
+                    try {
+                        pending.get().close();
+                    } catch (Exception e) {
+                        logger.debug("Prefetched file not closed: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private InputStream await(Future<InputStream> future, FileMetadata file) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read file " + file.id() + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading file " + file.id(), e);
+        }
+    }
+
+    // file names aren't unique and may contain separators, entries must be both unique and flat
+    private String entryName(FileMetadata file, Set<String> used) {
+        String name = file.fileName() == null || file.fileName().isBlank()
+                ? "file-" + file.id()
+                : file.fileName().replace('/', '_').replace('\\', '_');
+        if (used.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int copy = 2; ; copy++) {
+            String candidate = base + " (" + copy + ")" + extension;
+            if (used.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private boolean isCompressed(String fileName) {
+        int dot = fileName == null ? -1 : fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
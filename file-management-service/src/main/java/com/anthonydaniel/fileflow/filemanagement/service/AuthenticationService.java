@@ -1,6 +1,9 @@
 package com.anthonydaniel.fileflow.filemanagement.service;
 
 import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -12,17 +15,34 @@ import org.springframework.web.client.RestTemplate;
 @Service
 public class AuthenticationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
+
     private final RestTemplate restTemplate;
     private final LoadBalancerClient loadBalancerClient;
+    private final LocalTokenVerifier localTokenVerifier;
+    private final boolean localValidation;
 
     public AuthenticationService(RestTemplate metadataRestTemplate,
-                                 LoadBalancerClient loadBalancerClient) {
+                                 LoadBalancerClient loadBalancerClient,
+                                 LocalTokenVerifier localTokenVerifier,
+                                 @Value("${auth.validation.mode:remote}") String validationMode) {
         this.restTemplate = metadataRestTemplate;
         this.loadBalancerClient = loadBalancerClient;
+        this.localTokenVerifier = localTokenVerifier;
+        this.localValidation = "local".equalsIgnoreCase(validationMode);
+
+        if (localValidation && !localTokenVerifier.isConfigured()) {
+            throw new IllegalStateException("auth.validation.mode=local requires jwt.secret to be set");
+        }
+        logger.info("Token validation mode: {}", localValidation ? "local" : "remote (auth-service)");
     }
 
-    // validates token through the auth-service
+    // validates the token locally with the shared secret, or through the auth-service
     public TokenValidationResponse validateToken(String token) {
+        if (localValidation) {
+            return localTokenVerifier.validate(token);
+        }
+
         String serviceUrl = loadBalancerClient.choose("AUTH-SERVICE")
                 .getUri().toString();
 
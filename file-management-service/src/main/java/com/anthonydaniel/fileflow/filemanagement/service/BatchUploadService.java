@@ -0,0 +1,79 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.BatchUploadResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileInput;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Backs /files/upload-multiple. All metadata rows are created with one saveMetadataBatch call, then the
+ * files are put to MinIO concurrently on virtual threads, at most `concurrency` at a time per batch. A file
+ * that fails doesn't stop the others, its metadata row is removed and the error is reported in its result.
+ * The stored files are committed together at the end.
+ */
+@Service
+public class BatchUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchUploadService.class);
+
+    private final FileService fileService;
+    private final int concurrency;
+
+    public BatchUploadService(FileService fileService,
+                              @Value("${file.upload.batch-concurrency:8}") int concurrency) {
+        this.fileService = fileService;
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    // results are in the same order as files
+    public List<BatchUploadResult> uploadAll(List<MultipartFile> files, String username, List<String> tags) {
+        List<FileInput> inputs = files.stream()
+                .map(file -> new FileInput(file.getOriginalFilename(), file.getSize(), username, tags))
+                .toList();
+        List<FileMetadata> saved = fileService.saveMetadataBatch(inputs);
+        logger.info("Created metadata for {} files, uploading with concurrency {}", saved.size(), concurrency);
+
+        Semaphore permits = new Semaphore(concurrency);
+        List<Future<BatchUploadResult>> results = new ArrayList<>(files.size());
+        // close() waits for every upload, the multipart files are only valid while the request is open
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                FileMetadata metadata = saved.get(i);
+                results.add(executor.submit(() -> upload(file, metadata, permits)));
+            }
+        }
+        List<BatchUploadResult> uploaded = results.stream().map(Future::resultNow).toList();
+        fileService.commitUploads(uploaded.stream()
+                .filter(BatchUploadResult::isSuccess)
+                .map(BatchUploadResult::fileId)
+                .toList());
+        return uploaded;
+    }
+
+    private BatchUploadResult upload(MultipartFile file, FileMetadata metadata, Semaphore permits) {
+        try {
+            permits.acquire();
+            try {
+                fileService.storeFile(file, metadata);
+            } finally {
+                permits.release();
+            }
+            return BatchUploadResult.uploaded(metadata.fileName(), metadata.id());
+        } catch (Exception e) {
+            logger.error("Batch upload of {} (fileId {}) failed: {}", metadata.fileName(), metadata.id(), e.getMessage(), e);
+            fileService.discardMetadata(metadata.id());
+            return BatchUploadResult.failed(metadata.fileName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.config.PresignMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.DirectUploadTicket;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/*
+ * Direct uploads: the client gets presigned PUT URLs, sends the bytes straight to MinIO and then calls
+ * complete, which checks what arrived and commits the metadata row. Files up to one part get a single
+ * PUT URL, bigger ones a MinIO multipart upload with one URL per part. Tickets are kept in the upload
+ * session store, with no uploadId for the single PUT case.
+ * The ticket and upload id are recorded on the file's UPLOAD intent. For a ticket that is never completed
+ * the reconciler commits the row once an object of the declared size exists, removes an object of any
+ * other size (a presigned PUT can't limit it), and after file.reconcile.abandon-after aborts the
+ * multipart upload, deletes the ticket and discards the row.
+ */
+@Service
+public class DirectUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(DirectUploadService.class);
+
+    // S3 wants parts of at least 5MB (except the last) and at most 10000 of them
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PART_SIZE = 1024 * 1024 * 1024;
+    private static final int MAX_PARTS = 10000;
+
+    private final MinioClient minioClient;
+    private final MultipartMinioClient multipartMinioClient;
+    private final PresignMinioClient presignMinioClient;
+    private final FileService fileService;
+    private final UploadSessionStore sessionStore;
+    private final int defaultPartSize;
+    private final Duration urlExpiry;
+
+    public DirectUploadService(MinioClient minioClient,
+                               MultipartMinioClient multipartMinioClient,
+                               PresignMinioClient presignMinioClient,
+                               FileService fileService,
+                               UploadSessionStore sessionStore,
+                               @Value("${file.upload.part-size:8388608}") int defaultPartSize,
+                               @Value("${file.upload.direct.url-expiry:1h}") Duration urlExpiry) {
+        this.minioClient = minioClient;
+        this.multipartMinioClient = multipartMinioClient;
+        this.presignMinioClient = presignMinioClient;
+        this.fileService = fileService;
+        this.sessionStore = sessionStore;
+        this.defaultPartSize = defaultPartSize;
+        this.urlExpiry = urlExpiry;
+    }
+
+    public DirectUploadTicket createTicket(CreateUploadSessionRequest request, String owner) {
+        if (request.fileName() == null || request.fileName().isBlank()) {
+            throw new IllegalArgumentException("fileName is required");
+        }
+        if (request.fileSize() == null || request.fileSize() < 0) {
+            throw new IllegalArgumentException("fileSize is required");
+        }
+        int partSize = request.chunkSize() != null ? request.chunkSize() : defaultPartSize;
+        if (partSize < MIN_PART_SIZE || partSize > MAX_PART_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between " + MIN_PART_SIZE + " and " + MAX_PART_SIZE);
+        }
+        if ((request.fileSize() + partSize - 1) / partSize > MAX_PARTS) {
+            throw new IllegalArgumentException("File needs more than " + MAX_PARTS + " parts, use a bigger chunkSize");
+        }
+
+        List<String> tags = request.tags() != null ? request.tags() : Collections.emptyList();
+        Integer fileId = fileService.saveMetadata(request.fileName(), request.fileSize(), owner, tags);
+        String objectName = FileMetadata.objectName(owner, fileId, request.fileName());
+
+        String uploadId = null;
+        try {
+            if (request.fileSize() > partSize) {
+                uploadId = multipartMinioClient.createUpload(fileService.getBucketName(), objectName,
+                        request.contentType(), Map.of("fileId", fileId.toString())).join();
+            }
+
+            UploadSession ticket = new UploadSession(UUID.randomUUID().toString(), fileId, owner,
+                    request.fileName(), request.contentType(), request.fileSize(), partSize, objectName, uploadId, tags,
+                    System.currentTimeMillis());
+            Instant expiresAt = Instant.now().plus(urlExpiry);
+            List<String> urls = presignParts(ticket);
+            // recorded before the ticket is stored, so the reconciler can always find what to clean up
+            fileService.attachUploadSession(fileId, ticket.sessionId(), uploadId);
+            sessionStore.save(ticket);
+
+            logger.info("Created direct upload ticket {} for fileId {} ({} urls)", ticket.sessionId(), fileId,
+                    urls.size());
+            return new DirectUploadTicket(ticket.sessionId(), fileId, ticket.chunkSize(), urls, expiresAt);
+        } catch (Exception e) {
+            if (uploadId != null) {
+                abortQuietly(objectName, uploadId);
+            }
+            fileService.discardMetadata(fileId);
+            throw new RuntimeException("Error creating upload ticket: " + e.getMessage(), e);
+        }
+    }
+
+    // the object has to be there, whole, before the row is committed
+    public Integer complete(String ticketId, String owner) {
+        UploadSession ticket = getTicket(ticketId, owner);
+
+        if (ticket.uploadId() != null) {
+            completeMultipart(ticket);
+        }
+
+        long size = statSize(ticket);
+        if (size != ticket.fileSize()) {
+            if (ticket.uploadId() == null) {
+                // the PUT URL is still valid until it expires, the client can send the file again
+                removeQuietly(ticket.objectName());
+            }
+            throw new IllegalStateException("Uploaded file is " + size + " bytes, expected " + ticket.fileSize());
+        }
+
+        fileService.commitUploads(List.of(ticket.fileId()));
+        sessionStore.delete(ticketId);
+        logger.info("Completed direct upload {} for fileId {}", ticketId, ticket.fileId());
+        return ticket.fileId();
+    }
+
+    public void abort(String ticketId, String owner) {
+        UploadSession ticket = getTicket(ticketId, owner);
+        if (ticket.uploadId() != null) {
+            abortQuietly(ticket.objectName(), ticket.uploadId());
+        } else {
+            removeQuietly(ticket.objectName());
+        }
+        fileService.discardMetadata(ticket.fileId());
+        sessionStore.delete(ticketId);
+        logger.info("Aborted direct upload {}", ticketId);
+    }
+
+    private List<String> presignParts(UploadSession ticket) throws Exception {
+        if (ticket.uploadId() == null) {
+            return List.of(presignMinioClient.presignPut(fileService.getBucketName(), ticket.objectName(),
+                    urlExpiry, Map.of()));
+        }
+        List<String> urls = new ArrayList<>(ticket.totalChunks());
+        for (int part = 1; part <= ticket.totalChunks(); part++) {
+            urls.add(presignMinioClient.presignPut(fileService.getBucketName(), ticket.objectName(), urlExpiry,
+                    Map.of("partNumber", Integer.toString(part), "uploadId", ticket.uploadId())));
+        }
+        return urls;
+    }
+
+    // checked before completing, a wrong part can still be sent again while the upload is open
+    private void completeMultipart(UploadSession ticket) {
+        List<Part> parts;
+        try {
+            parts = multipartMinioClient.listParts(fileService.getBucketName(), ticket.objectName(), ticket.uploadId());
+        } catch (Exception e) {
+            throw new RuntimeException("Error listing uploaded parts: " + e.getMessage(), e);
+        }
+        if (parts.size() != ticket.totalChunks()) {
+            throw new IllegalStateException("Upload incomplete, " + parts.size() + " of "
+                    + ticket.totalChunks() + " parts stored");
+        }
+        for (Part part : parts) {
+            int index = part.partNumber() - 1;
+            if (part.partSize() != ticket.chunkLength(index)) {
+                throw new IllegalStateException("Part " + part.partNumber() + " is " + part.partSize()
+                        + " bytes, expected " + ticket.chunkLength(index));
+            }
+        }
+
+        try {
+            Part[] ordered = parts.stream()
+                    .sorted(Comparator.comparingInt(Part::partNumber))
+                    .map(part -> new Part(part.partNumber(), part.etag()))
+                    .toArray(Part[]::new);
+            multipartMinioClient.completeUpload(fileService.getBucketName(), ticket.objectName(),
+                    ticket.uploadId(), ordered).join();
+        } catch (Exception e) {
+            throw new RuntimeException("Error completing upload: " + e.getMessage(), e);
+        }
+    }
+
+    private long statSize(UploadSession ticket) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(fileService.getBucketName())
+                    .object(ticket.objectName())
+                    .build());
+            return stat.size();
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                throw new IllegalStateException("File has not been uploaded yet");
+            }
+            throw new RuntimeException("Error checking uploaded file: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Error checking uploaded file: " + e.getMessage(), e);
+        }
+    }
+
+    private void abortQuietly(String objectName, String uploadId) {
+        try {
+            multipartMinioClient.abortUpload(fileService.getBucketName(), objectName, uploadId).join();
+        } catch (Exception e) {
+            logger.error("Could not abort multipart upload {} for {}: {}", uploadId, objectName, e.getMessage());
+        }
+    }
+
+    private void removeQuietly(String objectName) {
+        try {
+            fileService.removeObject(objectName);
+        } catch (Exception e) {
+            logger.error("Could not remove object {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    private UploadSession getTicket(String ticketId, String owner) {
+        try {
+            // ticket ids end up in an object name, only accept what we hand out
+            UUID.fromString(ticketId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid upload ticket id");
+        }
+        UploadSession ticket = sessionStore.find(ticketId)
+                .orElseThrow(() -> new RuntimeException("Upload ticket not found"));
+        if (!ticket.owner().equals(owner)) {
+            throw new RuntimeException("You don't have permission to use this upload ticket");
+        }
+        return ticket;
+    }
+}
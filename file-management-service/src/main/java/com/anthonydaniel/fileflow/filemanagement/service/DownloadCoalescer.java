@@ -0,0 +1,359 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/*
+ * Single-flight for whole-object downloads: concurrent requests for the same object version share one
+ * getObject. The first request streams straight from MinIO to its client like any other download and
+ * only starts copying into a spool file once a second request joins (or from the start when the
+ * ObjectCache will keep the object). A request that joins late reads the bytes it missed with a range
+ * read of its own and tails the spool file from there, at its own pace.
+ * The first request's client sets the pace of the shared read; if it goes away the read goes on for the
+ * others. Spool files together stay under spool-budget, past it downloads are streamed separately.
+ * A failed fetch fails every reader after the bytes that did arrive, like a broken connection would.
+ */
+@Component
+public class DownloadCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCoalescer.class);
+
+    // a range of the object, opened from MinIO
+    @FunctionalInterface
+    public interface Upstream {
+        InputStream open(long offset, long length);
+    }
+
+    private final ObjectCache objectCache;
+    private final TransferBufferPool transferBufferPool;
+    private final boolean enabled;
+    private final long maxSize;
+    private final long spoolBudget;
+    private final AtomicLong spooled = new AtomicLong();
+    private final ConcurrentMap<Key, Flight> flights = new ConcurrentHashMap<>();
+
+    public DownloadCoalescer(ObjectCache objectCache,
+                             TransferBufferPool transferBufferPool,
+                             @Value("${file.download.coalesce.enabled:true}") boolean enabled,
+                             @Value("${file.download.coalesce.max-size:1GB}") DataSize maxSize,
+                             @Value("${file.download.coalesce.spool-budget:2GB}") DataSize spoolBudget) {
+        this.objectCache = objectCache;
+        this.transferBufferPool = transferBufferPool;
+        this.enabled = enabled;
+        this.maxSize = maxSize.toBytes();
+        this.spoolBudget = spoolBudget.toBytes();
+    }
+
+    public void write(StoredObject object, Upstream upstream, OutputStream out) throws IOException {
+        if (!enabled || object.size() > maxSize) {
+            objectCache.copy(upstream.open(0, object.size()), out);
+            return;
+        }
+
+        Key key = new Key(object.objectName(), object.etag());
+        Flight[] started = new Flight[1];
+        Flight flight = flights.compute(key, (k, current) -> {
+            if (current != null && current.join()) {
+                return current;
+            }
+            started[0] = new Flight(objectCache.newFile(), objectCache.wants(object));
+            return started[0];
+        });
+
+        if (started[0] != null) {
+            lead(key, flight, object, upstream, out);
+        } else {
+            try {
+                follow(flight, object, upstream, out);
+            } finally {
+                release(flight);
+            }
+        }
+    }
+
+    // the request that opened the flight, it does the one upstream read
+    private void lead(Key key, Flight flight, StoredObject object, Upstream upstream, OutputStream out)
+            throws IOException {
+        IOException failure = null;
+        IOException clientFailure = null;
+        FileChannel spool = null;
+        byte[] buffer = transferBufferPool.acquire();
+        try (InputStream in = upstream.open(0, object.size())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (spool == null && flight.startSpool(this::reserve, object.size())) {
+                    spool = FileChannel.open(flight.spool, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    flight.spoolOpened();
+                    logger.debug("Sharing the download of {} from byte {}", object.objectName(), flight.spoolStart);
+                }
+                if (spool != null) {
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        spool.write(chunk);
+                    }
+                }
+                flight.advance(read);
+
+                if (clientFailure == null) {
+                    try {
+                        out.write(buffer, 0, read);
+                    } catch (IOException e) {
+                        clientFailure = e;
+                    }
+                }
+                // nobody left to read what is still coming
+                if (clientFailure != null && flight.abandonIfAlone()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException(e.getMessage(), e);
+        } finally {
+            transferBufferPool.release(buffer);
+            if (spool != null) {
+                closeQuietly(spool);
+            }
+        }
+
+        // later requests start a new flight (or hit the cache) from here on
+        flights.remove(key, flight);
+        objectCache.recordServed(false, flight.written());
+        if (failure == null && flight.written() != object.size()) {
+            failure = clientFailure != null
+                    ? clientFailure
+                    : new IOException("Got " + flight.written() + " of " + object.size() + " bytes of " + object.objectName());
+        }
+        if (failure != null && failure != clientFailure) {
+            logger.warn("Fetching {} failed: {}", object.objectName(), failure.getMessage());
+        }
+
+        boolean cached = failure == null && spool != null && flight.spoolStart == 0 && objectCache.put(object, flight.spool);
+        if (cached) {
+            // the cache bounds its own size
+            unreserve(flight);
+        }
+        if (flight.finish(failure, cached)) {
+            discard(flight);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        if (clientFailure != null) {
+            throw clientFailure;
+        }
+    }
+
+    // a request that joined a running flight: what it missed comes from MinIO, the rest from the spool file
+    private void follow(Flight flight, StoredObject object, Upstream upstream, OutputStream out) throws IOException {
+        long start = flight.awaitSpoolStart();
+        if (start < 0) {
+            // no spool after all (budget, or the read ended first), fetch separately
+            objectCache.copy(upstream.open(0, object.size()), out);
+            return;
+        }
+        if (start > 0) {
+            objectCache.copy(upstream.open(0, start), out);
+        }
+
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(flight.spool, StandardOpenOption.READ)) {
+            long position = start;
+            long available;
+            while ((available = flight.awaitBeyond(position)) >= 0) {
+                while (position < available) {
+                    long sent = channel.transferTo(position - start, available - position, target);
+                    // the spool was truncated or replaced under us, don't spin on a file that won't grow
+                    if (sent <= 0) {
+                        throw new IOException("Spool file " + flight.spool + " is shorter than expected");
+                    }
+                    position += sent;
+                }
+            }
+        }
+    }
+
+    private void release(Flight flight) {
+        if (flight.leave()) {
+            discard(flight);
+        }
+    }
+
+    private boolean reserve(long bytes) {
+        if (spooled.addAndGet(bytes) <= spoolBudget) {
+            return true;
+        }
+        spooled.addAndGet(-bytes);
+        logger.debug("Spool budget of {} bytes used up, not sharing this download", spoolBudget);
+        return false;
+    }
+
+    private void unreserve(Flight flight) {
+        spooled.addAndGet(-flight.takeReserved());
+    }
+
+    private void discard(Flight flight) {
+        objectCache.discard(flight.spool);
+        unreserve(flight);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Could not close spool file: {}", e.getMessage());
+        }
+    }
+
+    // bytes of spool files currently on disk or reserved for ones being written
+    long spooledBytes() {
+        return spooled.get();
+    }
+
+    private record Key(String objectName, String etag) {
+    }
+
+    // progress of one upstream read, shared by the requests that joined it
+    private static final class Flight {
+        private final Path spool;
+        private boolean spoolWanted;
+        private boolean spooling;
+        // position in the object of the spool file's first byte, -1 until the file is open
+        private volatile long spoolStart = -1;
+        private boolean refused;
+        private long reserved;
+        private long written;
+        private int readers;
+        private boolean finished;
+        private boolean cached;
+        private IOException failure;
+
+        Flight(Path spool, boolean spoolWanted) {
+            this.spool = spool;
+            this.spoolWanted = spoolWanted;
+        }
+
+        // false once the read is over or can't be shared, the caller starts a new flight instead
+        synchronized boolean join() {
+            if (finished || refused) {
+                return false;
+            }
+            readers++;
+            if (spoolStart < 0) {
+                spoolWanted = true;
+            }
+            return true;
+        }
+
+        // called by the leader before each chunk is written, true once when the spool file has to be opened
+        synchronized boolean startSpool(LongPredicate budget, long size) {
+            if (spooling || refused || !spoolWanted) {
+                return false;
+            }
+            if (budget.test(size - written)) {
+                reserved = size - written;
+                spooling = true;
+            } else {
+                refused = true;
+                notifyAll();
+            }
+            return spooling;
+        }
+
+        // readers may open the file from here on
+        synchronized void spoolOpened() {
+            spoolStart = written;
+            notifyAll();
+        }
+
+        synchronized void advance(long bytes) {
+            written += bytes;
+            notifyAll();
+        }
+
+        synchronized long written() {
+            return written;
+        }
+
+        synchronized long takeReserved() {
+            long bytes = reserved;
+            reserved = 0;
+            return bytes;
+        }
+
+        // the leader's client is gone, ends the read unless someone else still needs it
+        synchronized boolean abandonIfAlone() {
+            if (readers > 0) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+
+        // true when the spool file is nobody's anymore and should be deleted
+        synchronized boolean finish(IOException failure, boolean cached) {
+            this.failure = failure;
+            this.cached = cached;
+            finished = true;
+            notifyAll();
+            return spooling && !cached && readers == 0;
+        }
+
+        synchronized boolean leave() {
+            readers--;
+            return finished && spooling && !cached && readers == 0;
+        }
+
+        // where the spool file starts, -1 when this reader has to fetch on its own
+        synchronized long awaitSpoolStart() throws IOException {
+            while (spoolStart < 0 && !refused && !finished) {
+                await();
+            }
+            return spoolStart;
+        }
+
+        // blocks until there is data past position or the read is over, -1 once everything was read.
+        // A failure is thrown after the bytes that did arrive
+        synchronized long awaitBeyond(long position) throws IOException {
+            while (written <= position && !finished) {
+                await();
+            }
+            if (position >= written) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return -1;
+            }
+            return written;
+        }
+
+        private void await() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for download data");
+            }
+        }
+    }
+}
@@ -1,10 +1,27 @@
 package com.anthonydaniel.fileflow.filemanagement.service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.anthonydaniel.fileflow.filemanagement.config.PresignMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.DeleteResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileAccess;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileDeletion;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileInput;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.PresignedUrl;
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,11 +29,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.*;
+import org.springframework.http.ContentDisposition;
 import org.springframework.stereotype.Service;
 import org.springframework.web.ErrorResponseException;
 import org.springframework.web.client.RestTemplate;
@@ -30,17 +43,42 @@ public class FileService {
 
 
     private final MinioClient minioClient;
-    private final RestTemplate metadataRestTemplate;
+    private final MetadataClient metadataClient;
+    private final TransferBufferPool transferBufferPool;
+    private final MetadataCache metadataCache;
+    private final ObjectCache objectCache;
+    private final DownloadCoalescer downloadCoalescer;
+    // concurrent downloads of one file share the statObject and, per user, the share lookup
+    private final SingleFlight<Integer, StoredObject> statFlights = new SingleFlight<>();
+    private final SingleFlight<AccessKey, Boolean> accessFlights = new SingleFlight<>();
     private final String bucketName = "fileflow";
-    @Value("${metadata.service.url}")
-    private final String metadataServiceUrl;
+
+    // beginDeleteBatch's per-id errors, and the most ids metadata-service takes per batch call
+    private static final String NOT_FOUND = "File not found";
+    private static final String ACCESS_DENIED = "Access denied";
+    private static final int DELETE_CHUNK = 1000;
+
+    // content-addressed uploads, see saveDeduplicated
+    @Value("${file.storage.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Autowired
+    private PresignMinioClient presignMinioClient;
+
+    @Value("${file.download.url-expiry:5m}")
+    private Duration downloadUrlExpiry;
 
 
     @Autowired
-    public FileService(MinioClient minioClient, @Value("${metadata.service.url:http://default-metadata-service}") String metadataServiceUrl, RestTemplate metadataRestTemplate) {
-        this.metadataRestTemplate = metadataRestTemplate;
+    public FileService(MinioClient minioClient, MetadataClient metadataClient,
+                       TransferBufferPool transferBufferPool, MetadataCache metadataCache, ObjectCache objectCache,
+                       DownloadCoalescer downloadCoalescer) {
+        this.metadataClient = metadataClient;
+        this.transferBufferPool = transferBufferPool;
+        this.metadataCache = metadataCache;
+        this.objectCache = objectCache;
+        this.downloadCoalescer = downloadCoalescer;
         logger.info("FileService constructor called with minioClient: {}", minioClient);
-        this.metadataServiceUrl = metadataServiceUrl;
         this.minioClient = minioClient;
         initializeBucket();
     }
@@ -90,74 +128,22 @@ public class FileService {
             List<String> safeTags = tags != null ? tags : Collections.emptyList();
             logger.info("2. Processed tags: {}", safeTags);
 
-            String metadataMutation = """
-        mutation SaveMetadata($fileName: String!, $fileSize: Int!, $owner: String!, $tags: [String!]) {
-            saveMetadata(
-                fileName: $fileName
-                fileSize: $fileSize
-                owner: $owner
-                tags: $tags
-            ) {
-                id
-                fileName
-                tags
-            }
-        }""";
-
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("fileName", file.getOriginalFilename());
-            variables.put("fileSize", (int) file.getSize());
-            variables.put("owner", userId);
-            variables.put("tags", safeTags);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", metadataMutation);
-            requestBody.put("variables", variables);
-
-            logger.info("3. Sending GraphQL request to URL: {} with body: {}", metadataServiceUrl, requestBody);
-
-            ResponseEntity<Map<String, Object>> response = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody),
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            logger.info("4. Received response from metadata service: {}", response.getBody());
-
-            if (response.getBody() == null) {
-                throw new RuntimeException("Received null response from metadata service");
-            }
-
-            Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-            if (data == null) {
-                List<Map<String, Object>> errors = (List<Map<String, Object>>) response.getBody().get("errors");
-                if (errors != null && !errors.isEmpty()) {
-                    String errorMessage = (String) errors.get(0).get("message");
-                    throw new RuntimeException("GraphQL error: " + errorMessage);
-                }
-                throw new RuntimeException("No data received from metadata service");
+            if (dedupEnabled) {
+                Integer fileId = saveDeduplicated(file, userId, safeTags);
+                return "File uploaded successfully. FileID: " + fileId;
             }
 
-            Map<String, Object> savedMetadata = (Map<String, Object>) data.get("saveMetadata");
-            if (savedMetadata == null) {
-                throw new RuntimeException("No saveMetadata field in response");
-            }
-
-            Integer fileId = ((Number) savedMetadata.get("id")).intValue();
+            Integer fileId = saveMetadata(file.getOriginalFilename(), file.getSize(), userId, safeTags);
             logger.info("5. Got fileId from metadata service: {}", fileId);
 
-            String objectName = String.format("%s/%d_%s", userId, fileId, file.getOriginalFilename());
-
-            try (InputStream inputStream = file.getInputStream()) {
-                minioClient.putObject(PutObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(objectName)
-                        .stream(inputStream, file.getSize(), -1)
-                        .contentType(file.getContentType())
-                        .userMetadata(Map.of("fileId", fileId.toString()))
-                        .build());
+            String objectName = FileMetadata.objectName(userId, fileId, file.getOriginalFilename());
+            try {
+                putObject(file, objectName, Map.of("fileId", fileId.toString()));
+            } catch (Exception e) {
+                discardMetadata(fileId);
+                throw e;
             }
+            commitUploads(List.of(fileId));
 
             return "File uploaded successfully. FileID: " + fileId;
         } catch (Exception e) {
@@ -171,203 +157,389 @@ public class FileService {
     }
 
 
-    public Resource getFile(String requestingUserId, Integer fileId) {
+    /*
+     * Content-addressed upload. The file is hashed locally first (the servlet container has already spooled
+     * the multipart body), the new row takes a reference on blobs/<sha256>, and the put is skipped when that
+     * blob is already stored. The reference is taken before the existence check, so the blob can't be garbage
+     * collected in between.
+     */
+    private Integer saveDeduplicated(MultipartFile file, String userId, List<String> tags) throws Exception {
+        String contentHash = sha256(file);
+        // not retried, every call inserts a row; metadata-service settles blob conflicts itself and leaves
+        // contentHash out when the blob can't be shared, objectName then is the file's own
+        FileMetadata saved = metadataClient.saveMetadata(file.getOriginalFilename(), file.getSize(), userId, tags,
+                contentHash);
         try {
-            // get the filename + owner from metadata service
-            String query = """
-            query {
-                getMetadataById(id: %d) {
-                    fileName
-                    owner
-                }
+            if (objectExists(saved.objectName())) {
+                logger.info("Blob {} already stored, skipping upload of fileId {}", contentHash, saved.id());
+            } else {
+                putObject(file, saved.objectName(), Map.of("sha256", contentHash));
             }
-        """.formatted(fileId);
+        } catch (Exception e) {
+            discardMetadata(saved.id());
+            throw e;
+        }
+        commitUploads(List.of(saved.id()));
+        return saved.id();
+    }
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", query);
+    private String sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            transferBufferPool.transfer(in, OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-            ResponseEntity<Map<String, Object>> response = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody),
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+    // stores the content of a file whose metadata row already exists
+    public void storeFile(MultipartFile file, FileMetadata metadata) throws Exception {
+        putObject(file, metadata.objectName(), Map.of("fileId", metadata.id().toString()));
+    }
 
-            Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-            Map<String, Object> metadata = (Map<String, Object>) data.get("getMetadataById");
-            String fileName = (String) metadata.get("fileName");
-            String owner = (String) metadata.get("owner");
+    private void putObject(MultipartFile file, String objectName, Map<String, String> userMetadata) throws Exception {
+        try (InputStream inputStream = file.getInputStream()) {
+            minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .stream(inputStream, file.getSize(), -1)
+                    .contentType(file.getContentType())
+                    .userMetadata(userMetadata)
+                    .build());
+        }
+    }
 
-            // use owners username to construct the objects name
-            String objectName = String.format("%s/%d_%s", owner, fileId, fileName);
+    // creates the metadata row and returns its id, the id is part of the object name
+    public Integer saveMetadata(String fileName, long fileSize, String owner, List<String> tags) {
+        logger.info("3. Saving metadata for file: {}, owner: {}, tags: {}", fileName, owner, tags);
+        FileMetadata saved = metadataClient.saveMetadata(fileName, fileSize, owner, tags, null);
+        logger.info("4. Received metadata from metadata service: {}", saved);
+        return saved.id();
+    }
 
-            InputStream stream = minioClient.getObject(GetObjectArgs.builder()
+    // one metadata mutation for a whole batch of uploads, rows come back in input order
+    public List<FileMetadata> saveMetadataBatch(List<FileInput> inputs) {
+        return metadataClient.saveMetadataBatch(inputs);
+    }
+
+    /*
+     * Publishes uploads whose objects are stored. Not fatal when it fails, the rows stay PENDING with their
+     * UPLOAD intent and StorageReconciler commits them once it sees the objects exist.
+     */
+    public void commitUploads(List<Integer> fileIds) {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        try {
+            metadataClient.commitMetadata(fileIds);
+        } catch (Exception e) {
+            logger.warn("Could not commit uploads {}, leaving them to the reconciler: {}", fileIds, e.getMessage());
+        }
+    }
+
+    // lets StorageReconciler abort the multipart upload and drop the session if the upload is abandoned
+    public void attachUploadSession(Integer fileId, String sessionId, String uploadId) {
+        if (!metadataClient.attachUploadSession(fileId, sessionId, uploadId)) {
+            throw new RuntimeException("No pending upload for fileId: " + fileId);
+        }
+    }
+
+    // streamed uploads only know their size once the last byte has arrived
+    public void updateFileSize(Integer fileId, long fileSize) {
+        boolean updated = metadataClient.updateFileSize(fileId, fileSize);
+        metadataCache.invalidate(fileId);
+        if (!updated) {
+            throw new RuntimeException("Failed to update file size for fileId: " + fileId);
+        }
+    }
+
+    // best effort cleanup of a metadata row whose upload never made it to MinIO
+    public void discardMetadata(Integer fileId) {
+        try {
+            metadataClient.deleteMetadata(fileId, null);
+            metadataCache.invalidate(fileId);
+            logger.info("Discarded metadata for failed upload, fileId: {}", fileId);
+        } catch (Exception e) {
+            logger.error("Could not discard metadata for fileId {}: {}", fileId, e.getMessage());
+        }
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    // one metadata lookup per file, shared by permission check, object name and Content-Disposition
+    public FileMetadata getMetadata(Integer fileId) {
+        return metadataCache.get(fileId, this::fetchMetadata);
+    }
+
+    // the one place a missing file becomes "File not found", errors from the lookup itself propagate as they are
+    private FileMetadata fetchMetadata(Integer fileId) {
+        FileMetadata metadata = metadataClient.getMetadataById(fileId);
+        if (metadata == null) {
+            throw new RuntimeException("File not found: " + fileId);
+        }
+        return metadata;
+    }
+
+    // looks up the file in MinIO without reading any content
+    public StoredObject statFile(FileMetadata metadata) {
+        return statFlights.get(metadata.id(), () -> fetchStat(metadata));
+    }
+
+    private StoredObject fetchStat(FileMetadata metadata) {
+        try {
+            String objectName = metadata.objectName();
+
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
                     .bucket(bucketName)
                     .object(objectName)
                     .build());
 
-            byte[] content = stream.readAllBytes();
-            return new ByteArrayResource(content);
+            return new StoredObject(metadata.id(), metadata.fileName(), objectName, stat.size(), stat.etag(),
+                    stat.lastModified(), stat.contentType());
         } catch (Exception e) {
             throw new RuntimeException("Error downloading file from MinIO: " + e.getMessage(), e);
         }
     }
 
-    public boolean checkFileAccessPermission(Integer fileId, String username, String authHeader) {
+    // signed locally, MinIO isn't contacted. The download name is baked into the URL so clients still get
+    // the original file name even when the object is a content-addressed blob
+    public PresignedUrl presignDownload(FileMetadata metadata) {
         try {
-            logger.debug("Checking file access permission for fileId: {}, username: {}", fileId, username);
+            Instant expiresAt = Instant.now().plus(downloadUrlExpiry);
+            String disposition = ContentDisposition.attachment()
+                    .filename(metadata.fileName())
+                    .build()
+                    .toString();
+            String url = presignMinioClient.presignGet(bucketName, metadata.objectName(), downloadUrlExpiry,
+                    Map.of("response-content-disposition", disposition));
+            return new PresignedUrl(url, expiresAt);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating download URL: " + e.getMessage(), e);
+        }
+    }
 
-            // get the owner info
-            String metadataQuery = """
-            query {
-                getMetadataById(id: %d) {
-                    owner
-                }
-            }
-        """.formatted(fileId);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", authHeader);
-
-            Map<String, Object> metadataRequestBody = new HashMap<>();
-            metadataRequestBody.put("query", metadataQuery);
-
-            HttpEntity<Map<String, Object>> metadataRequest = new HttpEntity<>(metadataRequestBody, headers);
-            ResponseEntity<Map<String, Object>> metadataResponse = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    metadataRequest,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            if (metadataResponse.getBody() != null) {
-                Map<String, Object> data = (Map<String, Object>) metadataResponse.getBody().get("data");
-                Map<String, Object> metadata = (Map<String, Object>) data.get("getMetadataById");
-                String owner = (String) metadata.get("owner");
-
-                // if user = owner, return true
-                if (username.equals(owner)) {
-                    logger.debug("User {} is the owner of file {}", username, fileId);
-                    return true;
-                }
-
-                // if not owner, check if file is shared with user
-                String accessQuery = """
-                query {
-                    hasFileAccess(fileId: %d, username: "%s")
-                }
-                """.formatted(fileId, username);
-
-                Map<String, Object> accessRequestBody = new HashMap<>();
-                accessRequestBody.put("query", accessQuery);
-
-                HttpEntity<Map<String, Object>> accessRequest = new HttpEntity<>(accessRequestBody, headers);
-                ResponseEntity<Map<String, Object>> accessResponse = metadataRestTemplate.exchange(
-                        metadataServiceUrl + "/graphql",
-                        HttpMethod.POST,
-                        accessRequest,
-                        new ParameterizedTypeReference<Map<String, Object>>() {}
-                );
-
-                if (accessResponse.getBody() != null) {
-                    Map<String, Object> accessData = (Map<String, Object>) accessResponse.getBody().get("data");
-                    if (accessData != null) {
-                        Boolean hasAccess = (Boolean) accessData.get("hasFileAccess");
-                        logger.debug("Access for user {} on file {}: {}", username, fileId, hasAccess);
-                        return hasAccess != null && hasAccess;
-                    }
-                }
+    // false only when MinIO says the object isn't there, any other failure is thrown
+    public boolean objectExists(String objectName) throws Exception {
+        return objectSize(objectName) != null;
+    }
+
+    // null only when MinIO says the object isn't there, any other failure is thrown
+    public Long objectSize(String objectName) throws Exception {
+        try {
+            return minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .build()).size();
+        } catch (io.minio.errors.ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
             }
+            throw e;
+        }
+    }
 
-            logger.warn("No access found for user {} on file {}", username, fileId);
-            return false;
+    // removing an object that is already gone succeeds, so this can be retried
+    public void removeObject(String objectName) throws Exception {
+        objectCache.invalidate(objectName);
+        minioClient.removeObject(RemoveObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .build());
+    }
+
+    // every object in the bucket, listed lazily page by page
+    public Iterable<Result<Item>> listObjects() {
+        return minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .recursive(true)
+                .build());
+    }
+
+    // whole-object download, concurrent downloads of the same version share one getObject
+    public void download(StoredObject object, OutputStream out) throws IOException {
+        downloadCoalescer.write(object, (offset, length) -> openFile(object, offset, length), out);
+    }
+
+    // the whole object without a statObject first, for callers that don't need size or etag up front
+    public InputStream openFile(FileMetadata metadata) {
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(metadata.objectName())
+                    .build());
         } catch (Exception e) {
-            logger.error("Error checking file access permission: {}", e.getMessage(), e);
-            return false;
+            throw new RuntimeException("Error downloading file from MinIO: " + e.getMessage(), e);
         }
     }
 
-    public boolean deleteFile(Integer fileId, String requestingUserId, String authHeader) {
-        try {
-            logger.info("Starting delete process for fileId: {}, requestingUserId: {}", fileId, requestingUserId);
+    // opens the MinIO stream, caller must close it
+    public InputStream openFile(StoredObject object) {
+        return openFile(object, 0, object.size());
+    }
 
-            // check user has permission to delete
-            if (!checkFileAccessPermission(fileId, requestingUserId, authHeader)) {
-                logger.warn("User {} does not have permission to delete file {}", requestingUserId, fileId);
-                throw new RuntimeException("You don't have permission to delete this file");
+    // opens only length bytes starting at offset, used for Range requests
+    public InputStream openFile(StoredObject object, long offset, long length) {
+        try {
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(object.objectName());
+            if (offset > 0 || length < object.size()) {
+                args.offset(offset).length(length);
             }
+            return minioClient.getObject(args.build());
+        } catch (Exception e) {
+            throw new RuntimeException("Error downloading file from MinIO: " + e.getMessage(), e);
+        }
+    }
 
-            // get metadata
-            String query = """
-            query {
-                getMetadataById(id: %d) {
-                    fileName
-                    owner
-                }
+    // one call to metadata-service covers both the owner check and the share lookup
+    public boolean checkFileAccessPermission(Integer fileId, String username, String authHeader) {
+        return checkFileAccessPermissions(List.of(fileId), username, authHeader).get(fileId);
+    }
+
+    // fileId -> can access, for pages that show many files at once
+    public Map<Integer, Boolean> checkFileAccessPermissions(List<Integer> fileIds, String username, String authHeader) {
+        Map<Integer, Boolean> permissions = new LinkedHashMap<>();
+        fileIds.forEach(fileId -> permissions.put(fileId, false));
+        try {
+            for (FileAccess access : metadataClient.hasFileAccessBatch(fileIds, username, authHeader)) {
+                permissions.put(access.fileId(), access.hasAccess());
             }
-        """.formatted(fileId);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("query", query);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", authHeader);
-
-            ResponseEntity<Map<String, Object>> response = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody, headers),
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-            Map<String, Object> metadata = (Map<String, Object>) data.get("getMetadataById");
-            String fileName = (String) metadata.get("fileName");
-            String owner = (String) metadata.get("owner");
-
-            // make object name and delete from MinIO
-            String objectName = String.format("%s/%d_%s", owner, fileId, fileName);
-            minioClient.removeObject(RemoveObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(objectName)
-                    .build());
+        } catch (Exception e) {
+            logger.error("Error checking file access permissions: {}", e.getMessage(), e);
+        }
+        return permissions;
+    }
 
-            logger.info("Successfully deleted file from MinIO storage: {}", objectName);
+    public boolean checkFileAccessPermission(FileMetadata metadata, String username, String authHeader) {
+        Integer fileId = metadata.id();
+        try {
+            logger.debug("Checking file access permission for fileId: {}, username: {}", fileId, username);
 
-            // delete metadata
-            String deleteMutation = """
-            mutation {
-                deleteMetadata(id: %d)
+            // if user = owner, return true
+            if (username.equals(metadata.owner())) {
+                logger.debug("User {} is the owner of file {}", username, fileId);
+                return true;
             }
-        """.formatted(fileId);
 
-            requestBody = new HashMap<>();
-            requestBody.put("query", deleteMutation);
+            // if not owner, check if file is shared with user
+            boolean hasAccess = accessFlights.get(new AccessKey(fileId, username),
+                    () -> metadataClient.hasFileAccess(fileId, username, authHeader));
+            logger.debug("Access for user {} on file {}: {}", username, fileId, hasAccess);
+            return hasAccess;
+        } catch (Exception e) {
+            logger.error("Error checking file access permission: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    public boolean deleteFile(Integer fileId, String requestingUserId, String authHeader) {
+        logger.info("Starting delete process for fileId: {}, requestingUserId: {}", fileId, requestingUserId);
+        DeleteResult result = deleteFiles(List.of(fileId), requestingUserId, authHeader).get(0);
+        if (result.deleted()) {
+            return true;
+        }
+        if (NOT_FOUND.equals(result.error()) || ACCESS_DENIED.equals(result.error())) {
+            // unknown and foreign files look the same to the caller
+            logger.warn("User {} does not have permission to delete file {}", requestingUserId, fileId);
+            throw new RuntimeException("You don't have permission to delete this file");
+        }
+        throw new RuntimeException("Error deleting file: " + result.error());
+    }
 
-            response = metadataRestTemplate.exchange(
-                    metadataServiceUrl + "/graphql",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody, headers),
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+    /*
+     * Bulk delete, results in the order of fileIds (duplicates collapsed). Per chunk of DELETE_CHUNK ids it
+     * costs one beginDeleteBatch call (access check, object names, DELETE intents), one MinIO removeObjects
+     * request and one deleteMetadataBatch transaction. Anything that fails after beginDeleteBatch is hidden
+     * already and left to StorageReconciler, which retries the removal from its outbox entry.
+     */
+    public List<DeleteResult> deleteFiles(List<Integer> fileIds, String username, String authHeader) {
+        List<Integer> ids = fileIds.stream().distinct().toList();
+        Map<Integer, DeleteResult> results = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK, ids.size()));
+            try {
+                deleteChunk(chunk, username, authHeader, results);
+            } catch (Exception e) {
+                logger.error("Error deleting files {}..{}: {}", chunk.get(0), chunk.get(chunk.size() - 1), e.getMessage(), e);
+                chunk.forEach(id -> results.putIfAbsent(id, DeleteResult.failed(id, e.getMessage())));
+            }
+        }
+        return ids.stream().map(results::get).toList();
+    }
 
-            data = (Map<String, Object>) response.getBody().get("data");
-            Boolean deleted = (Boolean) data.get("deleteMetadata");
+    private void deleteChunk(List<Integer> fileIds, String username, String authHeader,
+                             Map<Integer, DeleteResult> results) {
+        Map<String, Integer> idsByObject = new HashMap<>();
+        List<Integer> removed = new ArrayList<>();
+        for (FileDeletion deletion : metadataClient.beginDeleteBatch(fileIds, username, authHeader)) {
+            metadataCache.invalidate(deletion.fileId());
+            if (deletion.error() != null) {
+                results.put(deletion.fileId(), DeleteResult.failed(deletion.fileId(), deletion.error()));
+            } else if (deletion.file() == null) {
+                // nothing to remove, one missing row mustn't fail the rest of the chunk
+                results.put(deletion.fileId(), DeleteResult.failed(deletion.fileId(), "File not found"));
+            } else if (deletion.file().contentHash() != null) {
+                // shared blobs are removed by the reconciler once nothing references them any more
+                removed.add(deletion.fileId());
+            } else {
+                idsByObject.put(deletion.file().objectName(), deletion.fileId());
+            }
+        }
+        if (idsByObject.isEmpty() && removed.isEmpty()) {
+            return;
+        }
 
-            if (Boolean.TRUE.equals(deleted)) {
-                logger.info("Successfully deleted metadata for fileId: {}", fileId);
-                return true;
+        Map<String, String> failures = idsByObject.isEmpty() ? Map.of() : removeObjects(idsByObject.keySet());
+        idsByObject.forEach((objectName, fileId) -> {
+            String error = failures.get(objectName);
+            if (error != null) {
+                results.put(fileId, DeleteResult.failed(fileId, error));
             } else {
-                logger.error("Failed to delete metadata for fileId: {}", fileId);
-                throw new RuntimeException("Failed to delete file metadata");
+                removed.add(fileId);
+            }
+        });
+        logger.info("Removed {} objects from MinIO storage, {} failed", idsByObject.size() - failures.size(), failures.size());
+
+        if (!removed.isEmpty()) {
+            try {
+                metadataClient.deleteMetadataBatch(removed, authHeader);
+            } catch (Exception e) {
+                // the objects are gone and the rows hidden, the reconciler drops the rows later
+                logger.warn("Could not delete metadata of {} removed files, leaving them to the reconciler: {}",
+                        removed.size(), e.getMessage());
             }
+            removed.forEach(fileId -> results.put(fileId, DeleteResult.deleted(fileId)));
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("Error deleting file: {}", e.getMessage(), e);
-            throw new RuntimeException("Error deleting file: " + e.getMessage(), e);
+    // one multi-object delete request, returns objectName -> error for the objects MinIO couldn't remove
+    public Map<String, String> removeObjects(Collection<String> objectNames) {
+        objectNames.forEach(objectCache::invalidate);
+        List<DeleteObject> objects = objectNames.stream().map(DeleteObject::new).toList();
+        Map<String, String> errors = new HashMap<>();
+        // the result is lazy, iterating it is what sends the request
+        for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucketName)
+                .objects(objects)
+                .build())) {
+            try {
+                DeleteError error = result.get();
+                errors.put(error.objectName(), error.code() + ": " + error.message());
+            } catch (Exception e) {
+                throw new RuntimeException("Error removing objects from MinIO: " + e.getMessage(), e);
+            }
         }
+        return errors;
+    }
+
+    private record AccessKey(Integer fileId, String username) {
     }
 
 //    public void deleteFile(String fileName) {
@@ -0,0 +1,115 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/*
+ * Verifies the HS256 tokens issued by auth-service with the shared jwt.secret, so validating a request
+ * doesn't need a call to auth-service. Valid tokens are remembered for a short time keyed by their
+ * SHA-256 (never past their own expiry) to skip the signature check on bursts of requests.
+ */
+@Component
+public class LocalTokenVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(LocalTokenVerifier.class);
+
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> validTokens;
+
+    private record VerifiedToken(String username, long expiresAtMillis) {
+    }
+
+    public LocalTokenVerifier(@Value("${jwt.secret:}") String jwtSecret,
+                              @Value("${auth.token-cache.ttl:30s}") Duration cacheTtl,
+                              @Value("${auth.token-cache.max-size:10000}") long cacheMaxSize,
+                              MeterRegistry meterRegistry) {
+        // secret is only required when local validation is switched on
+        this.parser = jwtSecret.isEmpty() ? null : Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(jwtSecret.getBytes()))
+                .build();
+
+        long ttlNanos = cacheTtl.toNanos();
+        this.validTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        long untilExpiry = Duration.ofMillis(token.expiresAtMillis() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(ttlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validTokens, "validated-tokens");
+    }
+
+    public boolean isConfigured() {
+        return parser != null;
+    }
+
+    public TokenValidationResponse validate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return invalid("Invalid authorization header");
+        }
+        String token = authHeader.substring("Bearer ".length());
+        String key = hash(token);
+
+        VerifiedToken cached = validTokens.getIfPresent(key);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return new TokenValidationResponse(true, cached.username());
+        }
+
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            validTokens.put(key, new VerifiedToken(claims.getSubject(), expiresAt));
+            return new TokenValidationResponse(true, claims.getSubject());
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Local token validation failed: {}", e.getMessage());
+            return invalid("Invalid token");
+        }
+    }
+
+    private TokenValidationResponse invalid(String message) {
+        TokenValidationResponse response = new TokenValidationResponse(false, null);
+        response.setMessage(message);
+        return response;
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
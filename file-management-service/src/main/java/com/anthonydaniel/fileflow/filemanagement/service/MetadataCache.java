@@ -0,0 +1,45 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/*
+ * In-process cache of metadata lookups by fileId. fileName and owner never change after upload, so the
+ * TTL only bounds how long a deleted file can still be resolved by another instance. Access decisions
+ * (shares) are deliberately not cached here, and neither are rows that are still being uploaded: entries
+ * only come from getMetadata, which metadata-service answers for committed files alone.
+ * Hit/miss/eviction counts are published as cache.* meters with cache=file-metadata.
+ */
+@Component
+public class MetadataCache {
+
+    private final Cache<Integer, FileMetadata> cache;
+
+    public MetadataCache(@Value("${file.metadata-cache.max-size:10000}") long maxSize,
+                         @Value("${file.metadata-cache.ttl:60s}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "file-metadata");
+    }
+
+    // concurrent misses for the same id share one loader call
+    public FileMetadata get(Integer fileId, Function<Integer, FileMetadata> loader) {
+        return cache.get(fileId, loader);
+    }
+
+    public void invalidate(Integer fileId) {
+        cache.invalidate(fileId);
+    }
+}
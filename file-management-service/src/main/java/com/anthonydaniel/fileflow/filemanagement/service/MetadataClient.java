@@ -0,0 +1,327 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileAccess;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileDeletion;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileInput;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileIntent;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadataConnection;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import com.anthonydaniel.fileflow.filemanagement.dto.GraphQlRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.GraphQlResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Typed client for metadata-service's GraphQL API. Operation documents are constants and every value is
+ * passed as a variable, so nothing user supplied (tags, usernames) is ever spliced into query text and
+ * metadata-service sees the same few documents over and over, which its parsed document cache relies on.
+ * Responses are read straight into DTO records.
+ */
+@Component
+public class MetadataClient {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataClient.class);
+
+    private static final String METADATA_FIELDS = "id fileName owner fileSize tags contentHash";
+
+    private static final Operation<FileMetadata> SAVE_METADATA = new Operation<>("SaveMetadata", "saveMetadata", """
+            mutation SaveMetadata($fileName: String!, $fileSize: Long!, $owner: String!, $tags: [String!], $contentHash: String) {
+                saveMetadata(fileName: $fileName, fileSize: $fileSize, owner: $owner, tags: $tags, contentHash: $contentHash) { %s }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<FileMetadata>> SAVE_METADATA_BATCH = new Operation<>("SaveMetadataBatch", "saveMetadataBatch", """
+            mutation SaveMetadataBatch($inputs: [FileInput!]!) {
+                saveMetadataBatch(inputs: $inputs) { %s }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<FileMetadata> UPDATE_FILE_SIZE = new Operation<>("UpdateFileSize", "updateFileSize", """
+            mutation UpdateFileSize($id: Int!, $fileSize: Long!) {
+                updateFileSize(id: $id, fileSize: $fileSize) { id }
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Boolean> DELETE_METADATA = new Operation<>("DeleteMetadata", "deleteMetadata", """
+            mutation DeleteMetadata($id: Int!) {
+                deleteMetadata(id: $id)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<FileMetadata> GET_METADATA = new Operation<>("GetMetadataById", "getMetadataById", """
+            query GetMetadataById($id: Int!) {
+                getMetadataById(id: $id) { %s }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Boolean> HAS_FILE_ACCESS = new Operation<>("HasFileAccess", "hasFileAccess", """
+            query HasFileAccess($fileId: Int!, $username: String!) {
+                hasFileAccess(fileId: $fileId, username: $username)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<FileAccess>> HAS_FILE_ACCESS_BATCH = new Operation<>("HasFileAccessBatch", "hasFileAccessBatch", """
+            query HasFileAccessBatch($fileIds: [Int!]!, $username: String!) {
+                hasFileAccessBatch(fileIds: $fileIds, username: $username) { fileId owner hasAccess }
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<FileMetadata>> ACCESSIBLE_FILES = new Operation<>("AccessibleFiles", "accessibleFiles", """
+            query AccessibleFiles($fileIds: [Int!]!, $username: String!) {
+                accessibleFiles(fileIds: $fileIds, username: $username) { %s }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<FileMetadataConnection> FILES_BY_TAGS = new Operation<>("FilesByTags", "filesByTags", """
+            query FilesByTags($tags: [String!]!, $username: String!, $first: Int, $after: String) {
+                filesByTags(tags: $tags, mode: ALL, username: $username, first: $first, after: $after) {
+                    edges { cursor node { %s } }
+                    pageInfo { hasNextPage endCursor }
+                }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Integer> COMMIT_METADATA = new Operation<>("CommitMetadata", "commitMetadata", """
+            mutation CommitMetadata($ids: [Int!]!) {
+                commitMetadata(ids: $ids)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Boolean> ATTACH_UPLOAD_SESSION = new Operation<>("AttachUploadSession", "attachUploadSession", """
+            mutation AttachUploadSession($fileId: Int!, $sessionId: String!, $uploadId: String) {
+                attachUploadSession(fileId: $fileId, sessionId: $sessionId, uploadId: $uploadId)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<FileDeletion>> BEGIN_DELETE_BATCH = new Operation<>("BeginDeleteBatch", "beginDeleteBatch", """
+            mutation BeginDeleteBatch($fileIds: [Int!]!, $username: String!) {
+                beginDeleteBatch(fileIds: $fileIds, username: $username) { fileId error file { %s } }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Integer> DELETE_METADATA_BATCH = new Operation<>("DeleteMetadataBatch", "deleteMetadataBatch", """
+            mutation DeleteMetadataBatch($ids: [Int!]!) {
+                deleteMetadataBatch(ids: $ids)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<String>> CLAIM_RELEASED_BLOBS = new Operation<>("ClaimReleasedBlobs", "claimReleasedBlobs", """
+            mutation ClaimReleasedBlobs($olderThanSeconds: Int!, $limit: Int) {
+                claimReleasedBlobs(olderThanSeconds: $olderThanSeconds, limit: $limit)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<Integer> DELETE_BLOBS = new Operation<>("DeleteBlobs", "deleteBlobs", """
+            mutation DeleteBlobs($hashes: [String!]!) {
+                deleteBlobs(hashes: $hashes)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<String>> EXISTING_BLOBS = new Operation<>("ExistingBlobs", "existingBlobs", """
+            query ExistingBlobs($hashes: [String!]!) {
+                existingBlobs(hashes: $hashes)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<FileIntent>> PENDING_INTENTS = new Operation<>("PendingIntents", "pendingIntents", """
+            query PendingIntents($olderThanSeconds: Int!, $limit: Int) {
+                pendingIntents(olderThanSeconds: $olderThanSeconds, limit: $limit) {
+                    id action createdAt sessionId uploadId file { %s }
+                }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private static final Operation<List<Integer>> EXISTING_FILE_IDS = new Operation<>("ExistingFileIds", "existingFileIds", """
+            query ExistingFileIds($fileIds: [Int!]!) {
+                existingFileIds(fileIds: $fileIds)
+            }""", new ParameterizedTypeReference<>() {});
+
+    private static final Operation<FileMetadataConnection> ALL_METADATA = new Operation<>("AllMetadata", "allMetadata", """
+            query AllMetadata($first: Int, $after: String) {
+                allMetadata(first: $first, after: $after) {
+                    edges { cursor node { %s } }
+                    pageInfo { hasNextPage endCursor }
+                }
+            }""".formatted(METADATA_FIELDS), new ParameterizedTypeReference<>() {});
+
+    private final RestTemplate metadataRestTemplate;
+    private final String graphqlUrl;
+
+    public MetadataClient(RestTemplate metadataRestTemplate,
+                          @Value("${metadata.service.url:http://default-metadata-service}") String metadataServiceUrl) {
+        this.metadataRestTemplate = metadataRestTemplate;
+        this.graphqlUrl = metadataServiceUrl + "/graphql";
+    }
+
+    // contentHash stores the file as the shared blob of that hash, null for a per-file object
+    public FileMetadata saveMetadata(String fileName, long fileSize, String owner, List<String> tags, String contentHash) {
+        // HashMap since tags and contentHash may be null
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("fileName", fileName);
+        variables.put("fileSize", fileSize);
+        variables.put("owner", owner);
+        variables.put("tags", tags);
+        variables.put("contentHash", contentHash);
+
+        FileMetadata saved = execute(SAVE_METADATA, variables, null);
+        if (saved == null) {
+            throw new RuntimeException("No saveMetadata field in response");
+        }
+        return saved;
+    }
+
+    // rows come back in the order of inputs
+    public List<FileMetadata> saveMetadataBatch(List<FileInput> inputs) {
+        List<FileMetadata> saved = execute(SAVE_METADATA_BATCH, Map.of("inputs", inputs), null);
+        if (saved == null || saved.size() != inputs.size()) {
+            throw new RuntimeException("Unexpected saveMetadataBatch response");
+        }
+        return saved;
+    }
+
+    public boolean updateFileSize(Integer fileId, long fileSize) {
+        return execute(UPDATE_FILE_SIZE, Map.of("id", fileId, "fileSize", fileSize), null) != null;
+    }
+
+    public boolean deleteMetadata(Integer fileId, String authHeader) {
+        return Boolean.TRUE.equals(execute(DELETE_METADATA, Map.of("id", fileId), authHeader));
+    }
+
+    // null when there is no such file or it is still being uploaded or deleted, only committed files resolve
+    public FileMetadata getMetadataById(Integer fileId) {
+        return execute(GET_METADATA, Map.of("id", fileId), null);
+    }
+
+    public boolean hasFileAccess(Integer fileId, String username, String authHeader) {
+        return Boolean.TRUE.equals(execute(HAS_FILE_ACCESS, Map.of("fileId", fileId, "username", username), authHeader));
+    }
+
+    // owner and access decision for every id in one round trip, in the order the ids were given
+    public List<FileAccess> hasFileAccessBatch(List<Integer> fileIds, String username, String authHeader) {
+        List<FileAccess> access = execute(HAS_FILE_ACCESS_BATCH, Map.of("fileIds", fileIds, "username", username), authHeader);
+        return access != null ? access : List.of();
+    }
+
+    // metadata of the ids (at most 1000) username may read, in request order, the others are left out
+    public List<FileMetadata> getAccessibleFiles(List<Integer> fileIds, String username, String authHeader) {
+        List<FileMetadata> files = execute(ACCESSIBLE_FILES, Map.of("fileIds", fileIds, "username", username), authHeader);
+        return files != null ? files : List.of();
+    }
+
+    // files tagged with tag that username owns or has been shared, scoped and paginated by metadata-service
+    public FilePage getFilesByTag(String tag, String username, Integer first, String after, String authHeader) {
+        // HashMap since first and after may be null
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("tags", List.of(tag));
+        variables.put("username", username);
+        variables.put("first", first);
+        variables.put("after", after);
+        return FilePage.of(execute(FILES_BY_TAGS, variables, authHeader));
+    }
+
+    // publishes uploads whose objects are stored, returns how many rows were still pending
+    public int commitMetadata(List<Integer> fileIds) {
+        Integer committed = execute(COMMIT_METADATA, Map.of("ids", fileIds), null);
+        return committed != null ? committed : 0;
+    }
+
+    // records a resumable or direct upload on the file's UPLOAD intent, false when it isn't pending anymore
+    public boolean attachUploadSession(Integer fileId, String sessionId, String uploadId) {
+        // HashMap since uploadId is null for single PUT direct uploads
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("fileId", fileId);
+        variables.put("sessionId", sessionId);
+        variables.put("uploadId", uploadId);
+        return Boolean.TRUE.equals(execute(ATTACH_UPLOAD_SESSION, variables, null));
+    }
+
+    /*
+     * Access check, object names and DELETE intents for up to 1000 files in one call. The files username
+     * may delete are hidden from then on, the result has one entry per id in request order.
+     */
+    public List<FileDeletion> beginDeleteBatch(List<Integer> fileIds, String username, String authHeader) {
+        List<FileDeletion> deletions = execute(BEGIN_DELETE_BATCH,
+                Map.of("fileIds", fileIds, "username", username), authHeader);
+        if (deletions == null || deletions.size() != fileIds.size()) {
+            throw new RuntimeException("Unexpected beginDeleteBatch response");
+        }
+        return deletions;
+    }
+
+    // drops the rows of files whose objects are gone, one transaction for up to 1000 ids
+    public int deleteMetadataBatch(List<Integer> fileIds, String authHeader) {
+        Integer deleted = execute(DELETE_METADATA_BATCH, Map.of("ids", fileIds), authHeader);
+        return deleted != null ? deleted : 0;
+    }
+
+    // marks blobs unreferenced for olderThanSeconds as deleting, remove them from MinIO and then call deleteBlobs
+    public List<String> claimReleasedBlobs(int olderThanSeconds, int limit) {
+        List<String> hashes = execute(CLAIM_RELEASED_BLOBS,
+                Map.of("olderThanSeconds", olderThanSeconds, "limit", limit), null);
+        return hashes != null ? hashes : List.of();
+    }
+
+    public int deleteBlobs(List<String> hashes) {
+        Integer deleted = execute(DELETE_BLOBS, Map.of("hashes", hashes), null);
+        return deleted != null ? deleted : 0;
+    }
+
+    // the subset of hashes metadata-service knows a blob for, at most 1000 per call
+    public List<String> getExistingBlobs(List<String> hashes) {
+        List<String> existing = execute(EXISTING_BLOBS, Map.of("hashes", hashes), null);
+        return existing != null ? existing : List.of();
+    }
+
+    // outbox entries older than olderThanSeconds, oldest first
+    public List<FileIntent> getPendingIntents(int olderThanSeconds, int limit) {
+        List<FileIntent> intents = execute(PENDING_INTENTS,
+                Map.of("olderThanSeconds", olderThanSeconds, "limit", limit), null);
+        return intents != null ? intents : List.of();
+    }
+
+    // the subset of fileIds that still have a metadata row, at most 1000 ids per call
+    public List<Integer> getExistingFileIds(List<Integer> fileIds) {
+        List<Integer> existing = execute(EXISTING_FILE_IDS, Map.of("fileIds", fileIds), null);
+        return existing != null ? existing : List.of();
+    }
+
+    // one page of every committed file, for the storage scan
+    public FilePage getAllMetadata(int first, String after) {
+        // HashMap since after is null for the first page
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("first", first);
+        variables.put("after", after);
+        return FilePage.of(execute(ALL_METADATA, variables, null));
+    }
+
+    // returns the operation's root field, GraphQL errors and transport failures both surface as RuntimeException
+    private <T> T execute(Operation<T> operation, Map<String, Object> variables, String authHeader) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (authHeader != null) {
+            headers.set(HttpHeaders.AUTHORIZATION, authHeader);
+        }
+
+        GraphQlResponse<T> body;
+        try {
+            body = metadataRestTemplate.exchange(
+                    graphqlUrl,
+                    HttpMethod.POST,
+                    new HttpEntity<>(new GraphQlRequest(operation.document(), operation.name(), variables), headers),
+                    operation.responseType()
+            ).getBody();
+        } catch (RestClientException e) {
+            throw new RuntimeException("Metadata service request " + operation.name() + " failed: " + e.getMessage(), e);
+        }
+
+        if (body == null) {
+            throw new RuntimeException("Received null response from metadata service");
+        }
+        if (body.errors() != null && !body.errors().isEmpty()) {
+            logger.warn("{} returned errors: {}", operation.name(), body.errors());
+            throw new RuntimeException("GraphQL error: " + body.errors().get(0).message());
+        }
+        if (body.data() == null) {
+            throw new RuntimeException("No data received from metadata service");
+        }
+        logger.debug("{} completed", operation.name());
+        return body.data().get(operation.field());
+    }
+
+    private record Operation<T>(String name, String field, String document,
+                                ParameterizedTypeReference<GraphQlResponse<T>> responseType) {
+    }
+}
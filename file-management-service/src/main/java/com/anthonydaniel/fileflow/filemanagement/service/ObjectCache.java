@@ -0,0 +1,193 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Read-through cache of whole objects on local disk, for the few files that get most of the downloads.
+ * Entries are keyed by object name and ETag, so a changed object is simply a miss, and bounded by bytes
+ * with Caffeine's W-TinyLFU policy. Misses are filled by DownloadCoalescer, whose spool file of a whole
+ * download becomes the entry, hits are copied from the file with FileChannel.transferTo (or handed to
+ * Tomcat's sendfile by the controller).
+ * Every instance has its own cache, removeObject/removeObjects invalidate the local copy; other instances
+ * stop serving it once its metadata is gone.
+ * Meters: cache.* with cache=file-objects, file.object-cache.size (bytes on disk) and
+ * file.object-cache.served (bytes, source=cache for hits, source=minio for what was fetched, once per
+ * coalesced download).
+ */
+@Component
+public class ObjectCache {
+    private static final Logger logger = LoggerFactory.getLogger(ObjectCache.class);
+
+    // the only thing under file.object-cache.dir this class creates or deletes
+    private static final String OWN_DIRECTORY = "fileflow-object-cache";
+
+    // an evicted file may have just been handed to a download that hasn't opened it yet
+    private static final Executor DELAYED_DELETE = CompletableFuture.delayedExecutor(1, TimeUnit.MINUTES);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxObjectSize;
+    private final TransferBufferPool transferBufferPool;
+    private final Cache<Key, Path> cache;
+    private final Counter servedFromCache;
+    private final Counter servedFromMinio;
+
+    public ObjectCache(@Value("${file.object-cache.enabled:false}") boolean enabled,
+                       @Value("${file.object-cache.dir:${java.io.tmpdir}}") Path directory,
+                       @Value("${file.object-cache.max-size:1GB}") DataSize maxSize,
+                       @Value("${file.object-cache.max-object-size:64MB}") DataSize maxObjectSize,
+                       TransferBufferPool transferBufferPool,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory.resolve(OWN_DIRECTORY);
+        // the weigher works in ints
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), Integer.MAX_VALUE);
+        this.transferBufferPool = transferBufferPool;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Key key, Path path) -> (int) key.size())
+                // every fill writes a new file, so a replaced path is garbage as well
+                .removalListener((Key key, Path path, RemovalCause cause) -> {
+                    if (path != null) {
+                        DELAYED_DELETE.execute(() -> deleteQuietly(path));
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "file-objects");
+        Gauge.builder("file.object-cache.size", cache, ObjectCache::weightedSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.servedFromCache = Counter.builder("file.object-cache.served").baseUnit("bytes")
+                .tag("source", "cache").register(meterRegistry);
+        this.servedFromMinio = Counter.builder("file.object-cache.served").baseUnit("bytes")
+                .tag("source", "minio").register(meterRegistry);
+
+        prepareDirectory();
+    }
+
+    // also holds in-flight downloads when caching is off. What's left from a previous run isn't tracked, start empty.
+    // Only our own subdirectory is cleared, the configured directory may well be shared
+    private void prepareDirectory() {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+            Files.createDirectories(directory);
+            logger.info("Object cache in {}", directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Error preparing object cache directory " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Caffeine applies writes to the policy on its executor, so drain them first or the size lags behind put
+    private static double weightedSize(Cache<Key, Path> cache) {
+        cache.cleanUp();
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public Optional<Path> find(StoredObject object) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(Key.of(object)));
+    }
+
+    // zero-copy where the target allows it, the JDK falls back to a buffered copy otherwise
+    public void transfer(Path path, long offset, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new IOException("Cached file " + path + " is shorter than expected");
+                }
+                position += sent;
+            }
+        }
+        recordServed(true, length);
+    }
+
+    // a new file in the cache directory for DownloadCoalescer to spool into, hand it back with put or discard
+    public Path newFile() {
+        return directory.resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    // whether put would keep this object, so its download is worth copying to disk from the first byte
+    public boolean wants(StoredObject object) {
+        return enabled && object.size() <= maxObjectSize && find(object).isEmpty();
+    }
+
+    // takes ownership of a complete copy of the object when it fits, false leaves the file with the caller
+    public boolean put(StoredObject object, Path path) {
+        if (!enabled || object.size() > maxObjectSize) {
+            return false;
+        }
+        cache.put(Key.of(object), path);
+        logger.debug("Cached {} ({} bytes)", object.objectName(), object.size());
+        return true;
+    }
+
+    public void discard(Path path) {
+        deleteQuietly(path);
+    }
+
+    public void copy(InputStream in, OutputStream out) throws IOException {
+        try (in) {
+            recordServed(false, transferBufferPool.transfer(in, out));
+        }
+    }
+
+    // every cached version of the object, whatever its ETag
+    public void invalidate(String objectName) {
+        if (enabled) {
+            cache.asMap().keySet().removeIf(key -> key.objectName().equals(objectName));
+        }
+    }
+
+    public void recordServed(boolean fromCache, long bytes) {
+        (fromCache ? servedFromCache : servedFromMinio).increment(bytes);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record Key(String objectName, String etag, long size) {
+        static Key of(StoredObject object) {
+            return new Key(object.objectName(), object.etag(), object.size());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSessionStatus;
+import io.minio.messages.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.*;
+
+/*
+ * Resumable uploads: create a session, PUT chunks in any order (and again after a dropped connection),
+ * then complete. Every chunk is one part of a MinIO multipart upload, so MinIO itself is the record of
+ * which chunks have arrived - the session only stores the mapping from our session to its upload id.
+ * The session and upload id are recorded on the file's UPLOAD intent, so a session that is never completed
+ * is rolled back by StorageReconciler after file.reconcile.abandon-after: it aborts the multipart upload,
+ * deletes the session and discards the row.
+ */
+@Service
+public class ResumableUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final int MIN_CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_CHUNKS = 10000;
+
+    private final MultipartMinioClient multipartMinioClient;
+    private final FileService fileService;
+    private final UploadSessionStore sessionStore;
+    private final int defaultChunkSize;
+
+    public ResumableUploadService(MultipartMinioClient multipartMinioClient,
+                                  FileService fileService,
+                                  UploadSessionStore sessionStore,
+                                  @Value("${file.upload.part-size:8388608}") int defaultChunkSize) {
+        this.multipartMinioClient = multipartMinioClient;
+        this.fileService = fileService;
+        this.sessionStore = sessionStore;
+        this.defaultChunkSize = defaultChunkSize;
+    }
+
+    public UploadSession createSession(CreateUploadSessionRequest request, String owner) {
+        if (request.fileName() == null || request.fileName().isBlank()) {
+            throw new IllegalArgumentException("fileName is required");
+        }
+        if (request.fileSize() == null || request.fileSize() < 0) {
+            throw new IllegalArgumentException("fileSize is required");
+        }
+        int chunkSize = request.chunkSize() != null ? request.chunkSize() : defaultChunkSize;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE);
+        }
+        if ((request.fileSize() + chunkSize - 1) / chunkSize > MAX_CHUNKS) {
+            throw new IllegalArgumentException("File needs more than " + MAX_CHUNKS + " chunks, use a bigger chunkSize");
+        }
+
+        List<String> tags = request.tags() != null ? request.tags() : Collections.emptyList();
+        Integer fileId = fileService.saveMetadata(request.fileName(), request.fileSize(), owner, tags);
+        String objectName = FileMetadata.objectName(owner, fileId, request.fileName());
+
+        String uploadId = null;
+        try {
+            uploadId = multipartMinioClient.createUpload(fileService.getBucketName(), objectName,
+                    request.contentType(), Map.of("fileId", fileId.toString())).join();
+
+            UploadSession session = new UploadSession(UUID.randomUUID().toString(), fileId, owner,
+                    request.fileName(), request.contentType(), request.fileSize(), chunkSize, objectName,
+                    uploadId, tags, System.currentTimeMillis());
+            // recorded before the session is stored, so the reconciler can always find what to clean up
+            fileService.attachUploadSession(fileId, session.sessionId(), uploadId);
+            sessionStore.save(session);
+
+            logger.info("Created upload session {} for fileId {} ({} chunks)", session.sessionId(), fileId,
+                    session.totalChunks());
+            return session;
+        } catch (Exception e) {
+            if (uploadId != null) {
+                abortQuietly(objectName, uploadId);
+            }
+            fileService.discardMetadata(fileId);
+            throw new RuntimeException("Error creating upload session: " + e.getMessage(), e);
+        }
+    }
+
+    // chunks are buffered one at a time (at most chunkSize bytes) so they can be retried as a whole
+    public UploadSessionStatus uploadChunk(String sessionId, String owner, int index, long offset,
+                                           long contentLength, InputStream body) {
+        UploadSession session = getSession(sessionId, owner);
+        if (index < 0 || index >= session.totalChunks()) {
+            throw new IllegalArgumentException("Chunk index out of range: " + index);
+        }
+        if (offset != session.chunkOffset(index)) {
+            throw new IllegalArgumentException("Chunk " + index + " must start at offset " + session.chunkOffset(index));
+        }
+        int expected = session.chunkLength(index);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+        }
+
+        try (body) {
+            byte[] data = body.readNBytes(expected);
+            if (data.length != expected || body.read() != -1) {
+                throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+            }
+            multipartMinioClient.uploadPart(fileService.getBucketName(), session.objectName(), session.uploadId(),
+                    index + 1, data, data.length).join();
+            logger.debug("Stored chunk {} of session {}", index, sessionId);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error storing chunk " + index + ": " + e.getMessage(), e);
+        }
+        return buildStatus(session, listParts(session));
+    }
+
+    public UploadSessionStatus getStatus(String sessionId, String owner) {
+        UploadSession session = getSession(sessionId, owner);
+        return buildStatus(session, listParts(session));
+    }
+
+    public Integer complete(String sessionId, String owner) {
+        UploadSession session = getSession(sessionId, owner);
+        List<Part> parts = listParts(session);
+        if (parts.size() != session.totalChunks()) {
+            throw new IllegalStateException("Upload incomplete, " + parts.size() + " of "
+                    + session.totalChunks() + " chunks stored");
+        }
+
+        try {
+            Part[] ordered = parts.stream()
+                    .sorted(Comparator.comparingInt(Part::partNumber))
+                    .map(part -> new Part(part.partNumber(), part.etag()))
+                    .toArray(Part[]::new);
+            multipartMinioClient.completeUpload(fileService.getBucketName(), session.objectName(),
+                    session.uploadId(), ordered).join();
+        } catch (Exception e) {
+            throw new RuntimeException("Error completing upload: " + e.getMessage(), e);
+        }
+
+        fileService.commitUploads(List.of(session.fileId()));
+        sessionStore.delete(sessionId);
+        logger.info("Completed upload session {} for fileId {}", sessionId, session.fileId());
+        return session.fileId();
+    }
+
+    public void abort(String sessionId, String owner) {
+        UploadSession session = getSession(sessionId, owner);
+        abortQuietly(session.objectName(), session.uploadId());
+        fileService.discardMetadata(session.fileId());
+        sessionStore.delete(sessionId);
+        logger.info("Aborted upload session {}", sessionId);
+    }
+
+    private void abortQuietly(String objectName, String uploadId) {
+        try {
+            multipartMinioClient.abortUpload(fileService.getBucketName(), objectName, uploadId).join();
+        } catch (Exception e) {
+            logger.error("Could not abort multipart upload {} for {}: {}", uploadId, objectName, e.getMessage());
+        }
+    }
+
+    private UploadSession getSession(String sessionId, String owner) {
+        try {
+            // session ids end up in an object name, only accept what we hand out
+            UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid upload session id");
+        }
+        UploadSession session = sessionStore.find(sessionId)
+                .orElseThrow(() -> new RuntimeException("Upload session not found"));
+        if (!session.owner().equals(owner)) {
+            throw new RuntimeException("You don't have permission to use this upload session");
+        }
+        // single PUT direct upload tickets share the store but have no multipart upload behind them
+        if (session.uploadId() == null) {
+            throw new IllegalArgumentException("Not a resumable upload session");
+        }
+        return session;
+    }
+
+    private List<Part> listParts(UploadSession session) {
+        try {
+            return multipartMinioClient.listParts(fileService.getBucketName(), session.objectName(), session.uploadId());
+        } catch (Exception e) {
+            throw new RuntimeException("Error listing uploaded chunks: " + e.getMessage(), e);
+        }
+    }
+
+    private UploadSessionStatus buildStatus(UploadSession session, List<Part> parts) {
+        List<Integer> uploaded = parts.stream()
+                .map(part -> part.partNumber() - 1)
+                .sorted()
+                .toList();
+        long bytes = parts.stream().mapToLong(Part::partSize).sum();
+        return new UploadSessionStatus(session.sessionId(), session.fileId(), session.fileName(),
+                session.fileSize(), session.chunkSize(), session.totalChunks(), uploaded, bytes);
+    }
+}
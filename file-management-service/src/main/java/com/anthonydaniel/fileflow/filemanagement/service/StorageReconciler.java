@@ -0,0 +1,318 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileIntent;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import com.anthonydaniel.fileflow.filemanagement.dto.ReconciliationReport;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Keeps metadata-service and MinIO from diverging. Uploads and deletes write an outbox entry (FileIntent)
+ * in metadata-service before touching MinIO and clear it once done, so an entry that is still there after
+ * min-age belongs to an operation that crashed or lost its last call. reconcileIntents finishes or undoes
+ * those; scan compares the bucket with the metadata rows and reports what doesn't line up.
+ */
+@Component
+@ConditionalOnProperty(name = "file.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class StorageReconciler {
+    private static final Logger logger = LoggerFactory.getLogger(StorageReconciler.class);
+
+    // owner/fileId_fileName, see FileMetadata.objectName
+    private static final Pattern OBJECT_NAME = Pattern.compile("^[^/]+/(\\d+)_");
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int REPORT_LIMIT = 100;
+
+    private final FileService fileService;
+    private final MetadataClient metadataClient;
+    private final MultipartMinioClient multipartMinioClient;
+    private final UploadSessionStore sessionStore;
+    private final Duration minAge;
+    private final Duration abandonAfter;
+    private final Duration blobGrace;
+    private final int batchSize;
+
+    private volatile ReconciliationReport lastReport;
+
+    public StorageReconciler(FileService fileService, MetadataClient metadataClient,
+                             MultipartMinioClient multipartMinioClient, UploadSessionStore sessionStore,
+                             @Value("${file.reconcile.min-age:15m}") Duration minAge,
+                             @Value("${file.reconcile.abandon-after:24h}") Duration abandonAfter,
+                             @Value("${file.reconcile.blob-grace:1h}") Duration blobGrace,
+                             @Value("${file.reconcile.batch-size:100}") int batchSize) {
+        this.fileService = fileService;
+        this.metadataClient = metadataClient;
+        this.multipartMinioClient = multipartMinioClient;
+        this.sessionStore = sessionStore;
+        this.minAge = minAge;
+        this.abandonAfter = abandonAfter;
+        this.blobGrace = blobGrace;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${file.reconcile.interval:1m}", fixedDelayString = "${file.reconcile.interval:1m}")
+    public void reconcileIntents() {
+        List<FileIntent> intents;
+        try {
+            intents = metadataClient.getPendingIntents((int) minAge.toSeconds(), batchSize);
+        } catch (Exception e) {
+            logger.warn("Could not fetch pending intents: {}", e.getMessage());
+            return;
+        }
+        for (FileIntent intent : intents) {
+            try {
+                reconcile(intent);
+            } catch (Exception e) {
+                // left in the outbox, retried on the next run
+                logger.warn("Could not reconcile {} of fileId {}: {}", intent.action(), intent.file().id(), e.getMessage());
+            }
+        }
+    }
+
+    void reconcile(FileIntent intent) throws Exception {
+        FileMetadata file = intent.file();
+        switch (intent.action()) {
+            case UPLOAD -> {
+                Long size = fileService.objectSize(file.objectName());
+                if (size != null && size.equals(file.fileSize())) {
+                    // stored, only the commit got lost
+                    metadataClient.commitMetadata(List.of(file.id()));
+                    if (intent.sessionId() != null) {
+                        sessionStore.delete(intent.sessionId());
+                    }
+                    logger.info("Committed upload of fileId {} found in storage", file.id());
+                } else if (size != null) {
+                    // a presigned PUT carries no size limit, whatever the client sent is not what the row declares
+                    if (file.contentHash() == null) {
+                        fileService.removeObject(file.objectName());
+                    }
+                    rollBack(intent);
+                    logger.warn("Discarded upload of fileId {}: stored {} bytes, declared {}", file.id(), size,
+                            file.fileSize());
+                } else if (isAbandoned(intent)) {
+                    // resumable sessions can legitimately stay open for a long time, so only give up after abandon-after
+                    rollBack(intent);
+                    logger.info("Rolled back abandoned upload of fileId {}", file.id());
+                }
+            }
+            case DELETE -> {
+                // a shared blob stays until its last reference is gone, collectReleasedBlobs removes it then
+                if (file.contentHash() == null) {
+                    fileService.removeObject(file.objectName());
+                }
+                metadataClient.deleteMetadata(file.id(), null);
+                logger.info("Finished interrupted delete of fileId {}", file.id());
+            }
+        }
+    }
+
+    // the open multipart upload and its session go first, the row last so a failure leaves the intent to retry
+    private void rollBack(FileIntent intent) throws Exception {
+        FileMetadata file = intent.file();
+        if (intent.uploadId() != null) {
+            try {
+                multipartMinioClient.abortUpload(fileService.getBucketName(), file.objectName(), intent.uploadId()).join();
+            } catch (CompletionException e) {
+                // aborted by an earlier run or expired by a lifecycle rule
+                if (!(e.getCause() instanceof ErrorResponseException error
+                        && "NoSuchUpload".equals(error.errorResponse().code()))) {
+                    throw e;
+                }
+            }
+        }
+        if (intent.sessionId() != null) {
+            sessionStore.remove(intent.sessionId());
+        }
+        fileService.discardMetadata(file.id());
+    }
+
+    /*
+     * Garbage collection of deduplicated blobs nobody has referenced for blob-grace. metadata-service marks
+     * them deleting first, which stops new references, then the objects go and finally their entries.
+     */
+    @Scheduled(initialDelayString = "${file.reconcile.interval:1m}", fixedDelayString = "${file.reconcile.interval:1m}")
+    public void collectReleasedBlobs() {
+        try {
+            List<String> hashes = metadataClient.claimReleasedBlobs((int) blobGrace.toSeconds(), batchSize);
+            if (hashes.isEmpty()) {
+                return;
+            }
+            Map<String, String> failures = fileService.removeObjects(hashes.stream().map(hash -> BLOB_PREFIX + hash).toList());
+            // failed ones stay marked and are claimed again next run
+            List<String> removed = hashes.stream().filter(hash -> !failures.containsKey(BLOB_PREFIX + hash)).toList();
+            if (!removed.isEmpty()) {
+                metadataClient.deleteBlobs(removed);
+            }
+            logger.info("Collected {} unreferenced blobs, {} failed", removed.size(), failures.size());
+        } catch (Exception e) {
+            logger.warn("Could not collect released blobs: {}", e.getMessage());
+        }
+    }
+
+    // createdAt is metadata-service's local time, both services run with the same clock and zone
+    private boolean isAbandoned(FileIntent intent) {
+        LocalDateTime createdAt = LocalDateTime.parse(intent.createdAt());
+        return createdAt.plus(abandonAfter).isBefore(LocalDateTime.now());
+    }
+
+    /*
+     * Full comparison of the bucket with the metadata rows. Only reports, nothing is deleted: an object or
+     * row that is mid-upload while the scan runs can look inconsistent for a moment.
+     */
+    @Scheduled(initialDelayString = "${file.reconcile.scan-initial-delay:10m}",
+            fixedDelayString = "${file.reconcile.scan-interval:6h}")
+    public ReconciliationReport scan() {
+        Set<Integer> storedIds = new HashSet<>();
+        Set<String> storedBlobs = new HashSet<>();
+        Map<Integer, String> batch = new LinkedHashMap<>();
+        List<String> blobBatch = new ArrayList<>();
+        List<String> orphans = new ArrayList<>();
+        long orphanCount = 0;
+        long objects = 0;
+
+        try {
+            for (Result<Item> result : fileService.listObjects()) {
+                String objectName = result.get().objectName();
+                if (objectName.startsWith(UploadSessionStore.PREFIX)) {
+                    continue;
+                }
+                objects++;
+                if (objectName.startsWith(BLOB_PREFIX)) {
+                    String hash = objectName.substring(BLOB_PREFIX.length());
+                    storedBlobs.add(hash);
+                    blobBatch.add(hash);
+                    if (blobBatch.size() == SCAN_BATCH_SIZE) {
+                        orphanCount += findOrphanBlobs(blobBatch, orphans);
+                        blobBatch.clear();
+                    }
+                    continue;
+                }
+                Matcher matcher = OBJECT_NAME.matcher(objectName);
+                if (!matcher.find()) {
+                    // not laid out like anything this service writes
+                    orphanCount++;
+                    addCapped(orphans, objectName);
+                    continue;
+                }
+                Integer fileId = parseFileId(matcher.group(1));
+                if (fileId == null) {
+                    // looks like ours but no id we could have handed out
+                    orphanCount++;
+                    addCapped(orphans, objectName);
+                    continue;
+                }
+                storedIds.add(fileId);
+                batch.put(fileId, objectName);
+                if (batch.size() == SCAN_BATCH_SIZE) {
+                    orphanCount += findOrphans(batch, orphans);
+                    batch.clear();
+                }
+            }
+            orphanCount += findOrphans(batch, orphans);
+            orphanCount += findOrphanBlobs(blobBatch, orphans);
+
+            List<Integer> missing = new ArrayList<>();
+            long missingCount = 0;
+            long rows = 0;
+            String after = null;
+            FilePage page;
+            do {
+                page = metadataClient.getAllMetadata(100, after);
+                for (FileMetadata file : page.files()) {
+                    rows++;
+                    boolean stored = file.contentHash() != null
+                            ? storedBlobs.contains(file.contentHash())
+                            : storedIds.contains(file.id());
+                    if (!stored) {
+                        missingCount++;
+                        addCapped(missing, file.id());
+                    }
+                }
+                after = page.nextCursor();
+            } while (page.hasNext());
+
+            ReconciliationReport report = new ReconciliationReport(Instant.now(), objects, rows,
+                    orphanCount, orphans, missingCount, missing);
+            if (orphanCount > 0 || missingCount > 0) {
+                logger.warn("Storage scan found {} orphan objects and {} rows without an object: {}",
+                        orphanCount, missingCount, report);
+            } else {
+                logger.info("Storage scan found no inconsistencies ({} objects, {} rows)", objects, rows);
+            }
+            lastReport = report;
+            return report;
+        } catch (Exception e) {
+            logger.error("Storage scan failed: {}", e.getMessage(), e);
+            return lastReport;
+        }
+    }
+
+    // objects of batch whose id has no metadata row at all (pending and deleting rows still count)
+    private long findOrphans(Map<Integer, String> batch, List<String> orphans) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Set<Integer> existing = new HashSet<>(metadataClient.getExistingFileIds(new ArrayList<>(batch.keySet())));
+        long found = 0;
+        for (Map.Entry<Integer, String> entry : batch.entrySet()) {
+            if (!existing.contains(entry.getKey())) {
+                found++;
+                addCapped(orphans, entry.getValue());
+            }
+        }
+        return found;
+    }
+
+    // blobs without an entry in metadata-service, released blobs still have one until they are collected
+    private long findOrphanBlobs(List<String> hashes, List<String> orphans) {
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+        Set<String> existing = new HashSet<>(metadataClient.getExistingBlobs(hashes));
+        long found = 0;
+        for (String hash : hashes) {
+            if (!existing.contains(hash)) {
+                found++;
+                addCapped(orphans, BLOB_PREFIX + hash);
+            }
+        }
+        return found;
+    }
+
+    private static Integer parseFileId(String digits) {
+        try {
+            return Integer.valueOf(digits);
+        } catch (NumberFormatException e) {
+            logger.debug("Object id {} is out of range", digits);
+            return null;
+        }
+    }
+
+    private static <T> void addCapped(List<T> list, T item) {
+        if (list.size() < REPORT_LIMIT) {
+            list.add(item);
+        }
+    }
+
+    // null until the first scan has finished
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+}
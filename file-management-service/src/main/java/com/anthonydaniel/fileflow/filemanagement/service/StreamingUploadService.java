@@ -0,0 +1,184 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import io.minio.messages.Part;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Upload path that never holds a whole file. The multipart body is read item by item straight off the
+ * request, the file item is cut into part-size chunks and each chunk is sent to MinIO as an S3 multipart
+ * part while the next one is being read. At most `parallelism` parts are in flight, so memory per upload
+ * is bounded by parallelism * partSize.
+ *
+ * Form fields (tags[]) have to come before the file in the body since nothing is buffered.
+ */
+@Service
+public class StreamingUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadService.class);
+
+    // S3 rejects non-final parts smaller than 5 MiB
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final MultipartMinioClient multipartMinioClient;
+    private final FileService fileService;
+    private final int partSize;
+    private final int parallelism;
+    private final long maxFileSize;
+
+    public StreamingUploadService(MultipartMinioClient multipartMinioClient,
+                                  FileService fileService,
+                                  @Value("${file.upload.part-size:8388608}") int partSize,
+                                  @Value("${file.upload.parallelism:4}") int parallelism,
+                                  @Value("${file.upload.stream.max-file-size:-1}") long maxFileSize) {
+        this.multipartMinioClient = multipartMinioClient;
+        this.fileService = fileService;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.parallelism = Math.max(parallelism, 1);
+        this.maxFileSize = maxFileSize;
+    }
+
+    public static boolean isMultipart(HttpServletRequest request) {
+        return JakartaServletFileUpload.isMultipartContent(request);
+    }
+
+    public String uploadStream(HttpServletRequest request, String username) {
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setFileSizeMax(maxFileSize);
+
+        List<String> tags = new ArrayList<>();
+        try {
+            FileItemInputIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField()) {
+                    if ("tags[]".equals(item.getFieldName()) || "tags".equals(item.getFieldName())) {
+                        try (InputStream in = item.getInputStream()) {
+                            tags.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                        }
+                    }
+                    continue;
+                }
+                if ("file".equals(item.getFieldName())) {
+                    Integer fileId = uploadItem(item, username, tags);
+                    return "File uploaded successfully. FileID: " + fileId;
+                }
+            }
+            throw new RuntimeException("Request did not contain a file part");
+        } catch (IOException e) {
+            logger.error("Error reading upload stream: {}", e.getMessage(), e);
+            throw new RuntimeException("Error uploading file: " + e.getMessage(), e);
+        }
+    }
+
+    private Integer uploadItem(FileItemInput item, String username, List<String> tags) throws IOException {
+        String fileName = item.getName();
+        String bucketName = fileService.getBucketName();
+        logger.info("Starting streaming upload for file: {}, user: {}, tags: {}", fileName, username, tags);
+
+        // size is unknown until the stream ends, it's filled in once the upload completes
+        Integer fileId = fileService.saveMetadata(fileName, 0, username, tags);
+        String objectName = FileMetadata.objectName(username, fileId, fileName);
+
+        String uploadId = null;
+        try {
+            uploadId = multipartMinioClient.createUpload(bucketName, objectName, item.getContentType(),
+                    Map.of("fileId", fileId.toString())).join();
+
+            UploadedParts uploaded = uploadParts(item.getInputStream(), bucketName, objectName, uploadId);
+
+            // the size goes in before the object appears, the reconciler discards objects that don't match their row
+            fileService.updateFileSize(fileId, uploaded.size());
+            multipartMinioClient.completeUpload(bucketName, objectName, uploadId, uploaded.parts()).join();
+            fileService.commitUploads(List.of(fileId));
+            logger.info("Streaming upload finished for fileId: {}, {} bytes", fileId, uploaded.size());
+            return fileId;
+        } catch (Exception e) {
+            logger.error("Streaming upload failed for fileId {}: {}", fileId, e.getMessage(), e);
+            if (uploadId != null) {
+                abortQuietly(bucketName, objectName, uploadId);
+            }
+            fileService.discardMetadata(fileId);
+            throw new RuntimeException("Error uploading file: " + e.getMessage(), e);
+        }
+    }
+
+    private UploadedParts uploadParts(InputStream in, String bucketName, String objectName, String uploadId) throws Exception {
+        Semaphore inFlight = new Semaphore(parallelism);
+        Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Part>> parts = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        long total = 0;
+        int partNumber = 1;
+
+        try (in) {
+            while (true) {
+                inFlight.acquire();
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null) {
+                    buffer = new byte[partSize];
+                }
+                int read = in.readNBytes(buffer, 0, partSize);
+                // an empty file still needs one (empty) part
+                if (read == 0 && partNumber > 1) {
+                    inFlight.release();
+                    break;
+                }
+
+                byte[] partBuffer = buffer;
+                CompletableFuture<Part> part = multipartMinioClient
+                        .uploadPart(bucketName, objectName, uploadId, partNumber, partBuffer, read)
+                        .whenComplete((result, error) -> {
+                            if (error != null) {
+                                failed.set(true);
+                            }
+                            freeBuffers.offer(partBuffer);
+                            inFlight.release();
+                        });
+                parts.add(part);
+                total += read;
+                partNumber++;
+
+                // stop early rather than keep streaming into a doomed upload
+                if (failed.get()) {
+                    break;
+                }
+                if (read < partSize) {
+                    break;
+                }
+            }
+        }
+
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).join();
+        return new UploadedParts(total, parts.stream().map(CompletableFuture::join).toArray(Part[]::new));
+    }
+
+    private record UploadedParts(long size, Part[] parts) {
+    }
+
+    private void abortQuietly(String bucketName, String objectName, String uploadId) {
+        try {
+            multipartMinioClient.abortUpload(bucketName, objectName, uploadId).join();
+        } catch (Exception e) {
+            logger.error("Could not abort multipart upload {} for {}: {}", uploadId, objectName, e.getMessage());
+        }
+    }
+}
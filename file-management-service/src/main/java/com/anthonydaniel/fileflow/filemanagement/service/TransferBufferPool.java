@@ -0,0 +1,56 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// fixed size byte[] buffers reused between downloads so streaming a file never allocates per request
+@Component
+public class TransferBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    public TransferBufferPool(@Value("${file.transfer.buffer-size:65536}") int bufferSize,
+                              @Value("${file.transfer.pool-size:64}") int poolSize) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        // pool is empty under heavy load, hand out a throwaway buffer rather than blocking
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    // copies everything from in to out through one pooled buffer, returns bytes copied
+    public long transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
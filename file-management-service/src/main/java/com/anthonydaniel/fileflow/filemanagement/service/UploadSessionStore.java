@@ -0,0 +1,79 @@
+package com.anthonydaniel.fileflow.filemanagement.service;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+
+// keeps resumable upload sessions in the bucket so they survive restarts and are visible to every instance
+@Component
+public class UploadSessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionStore.class);
+    // not file content, the storage scan skips everything under it
+    public static final String PREFIX = ".upload-sessions/";
+
+    private final MinioClient minioClient;
+    private final ObjectMapper objectMapper;
+    private final String bucketName = "fileflow";
+
+    public UploadSessionStore(MinioClient minioClient, ObjectMapper objectMapper) {
+        this.minioClient = minioClient;
+        this.objectMapper = objectMapper;
+    }
+
+    public void save(UploadSession session) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(session);
+            minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(PREFIX + session.sessionId() + ".json")
+                    .stream(new ByteArrayInputStream(json), json.length, -1)
+                    .contentType("application/json")
+                    .build());
+        } catch (Exception e) {
+            throw new RuntimeException("Error saving upload session: " + e.getMessage(), e);
+        }
+    }
+
+    public Optional<UploadSession> find(String sessionId) {
+        try (InputStream in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(PREFIX + sessionId + ".json")
+                .build())) {
+            return Optional.of(objectMapper.readValue(in, UploadSession.class));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            throw new RuntimeException("Error loading upload session: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Error loading upload session: " + e.getMessage(), e);
+        }
+    }
+
+    public void delete(String sessionId) {
+        try {
+            remove(sessionId);
+        } catch (Exception e) {
+            logger.error("Could not remove upload session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    // like delete but fails, for the reconciler which keeps the intent and retries; a missing session is not an error
+    public void remove(String sessionId) throws Exception {
+        minioClient.removeObject(RemoveObjectArgs.builder()
+                .bucket(bucketName)
+                .object(PREFIX + sessionId + ".json")
+                .build());
+    }
+}
@@ -0,0 +1,88 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.service.ArchiveService;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ArchiveServiceTest {
+
+    private FileService fileService;
+    private MetadataClient metadataClient;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        fileService = mock(FileService.class);
+        metadataClient = mock(MetadataClient.class);
+        archiveService = new ArchiveService(fileService, metadataClient, new TransferBufferPool(1024, 2), 2, 100);
+    }
+
+    @Test
+    void zipsEveryFileInOrderWithUniqueNames() throws Exception {
+        List<FileMetadata> files = List.of(
+                file(1, "report.txt"), file(2, "report.txt"), file(3, "photo.jpg"), file(4, "a/b.txt"));
+        when(fileService.openFile(any(FileMetadata.class))).thenAnswer(invocation -> {
+            FileMetadata file = invocation.getArgument(0);
+            return new ByteArrayInputStream(("content of " + file.id()).getBytes());
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.writeArchive(files, out);
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes()));
+            }
+        }
+        assertEquals(Map.of(
+                "report.txt", "content of 1",
+                "report (2).txt", "content of 2",
+                "photo.jpg", "content of 3",
+                "a_b.txt", "content of 4"), entries);
+        assertEquals(List.of("report.txt", "report (2).txt", "photo.jpg", "a_b.txt"), List.copyOf(entries.keySet()));
+    }
+
+    @Test
+    void failedReadCutsTheArchive() {
+        when(fileService.openFile(any(FileMetadata.class)))
+                .thenReturn(new ByteArrayInputStream("first".getBytes()))
+                .thenThrow(new RuntimeException("Error downloading file from MinIO: gone"));
+
+        assertThrows(IOException.class, () -> archiveService.writeArchive(
+                List.of(file(1, "one.txt"), file(2, "two.txt")), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void inaccessibleIdRejectsTheWholeArchive() {
+        when(metadataClient.getAccessibleFiles(List.of(1, 2), "alice", "Bearer t"))
+                .thenReturn(List.of(file(1, "one.txt")));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> archiveService.resolveFiles(List.of(1, 2, 1), null, "alice", "Bearer t"));
+        assertTrue(e.getMessage().contains("permission"));
+        assertTrue(e.getMessage().contains("[2]"));
+    }
+
+    private FileMetadata file(int id, String name) {
+        return new FileMetadata(id, name, "alice", 10L, List.of(), null);
+    }
+}
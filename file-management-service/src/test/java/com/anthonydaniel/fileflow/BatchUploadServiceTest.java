@@ -0,0 +1,61 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.BatchUploadResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.service.BatchUploadService;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BatchUploadServiceTest {
+
+    @Test
+    void uploadsConcurrentlyWithinLimitAndReportsEachFile() throws Exception {
+        FileService fileService = mock(FileService.class);
+        when(fileService.saveMetadataBatch(anyList())).thenReturn(List.of(
+                new FileMetadata(1, "a.txt", "bob", 1L, List.of(), null),
+                new FileMetadata(2, "b.txt", "bob", 1L, List.of(), null),
+                new FileMetadata(3, "c.txt", "bob", 1L, List.of(), null),
+                new FileMetadata(4, "d.txt", "bob", 1L, List.of(), null)));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(invocation -> {
+            FileMetadata metadata = invocation.getArgument(1);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            if (metadata.id() == 3) {
+                throw new RuntimeException("boom");
+            }
+            return null;
+        }).when(fileService).storeFile(any(), any());
+
+        List<MultipartFile> files = List.of("a.txt", "b.txt", "c.txt", "d.txt").stream()
+                .map(name -> (MultipartFile) new MockMultipartFile("files", name, "text/plain", new byte[1]))
+                .toList();
+
+        List<BatchUploadResult> results = new BatchUploadService(fileService, 2).uploadAll(files, "bob", List.of());
+
+        assertEquals(List.of(
+                BatchUploadResult.uploaded("a.txt", 1),
+                BatchUploadResult.uploaded("b.txt", 2),
+                BatchUploadResult.failed("c.txt", "boom"),
+                BatchUploadResult.uploaded("d.txt", 4)), results);
+        assertTrue(maxRunning.get() <= 2);
+        verify(fileService, times(1)).saveMetadataBatch(anyList());
+        verify(fileService).discardMetadata(3);
+        verify(fileService, never()).discardMetadata(1);
+        verify(fileService).commitUploads(List.of(1, 2, 4));
+    }
+}
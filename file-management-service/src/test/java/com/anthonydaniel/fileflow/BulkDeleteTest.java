@@ -0,0 +1,90 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.DeleteResult;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileDeletion;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.service.DownloadCoalescer;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataCache;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BulkDeleteTest {
+
+    private MinioClient minioClient;
+    private MetadataClient metadataClient;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioClient = mock(MinioClient.class);
+        metadataClient = mock(MetadataClient.class);
+        when(minioClient.bucketExists(any())).thenReturn(true);
+        fileService = new FileService(minioClient, metadataClient, mock(TransferBufferPool.class),
+                mock(MetadataCache.class), mock(ObjectCache.class), mock(DownloadCoalescer.class));
+    }
+
+    @Test
+    void deletesManyFilesWithOneCallPerStep() {
+        FileMetadata removable = new FileMetadata(1, "a.txt", "bob", 1L, List.of(), null);
+        FileMetadata locked = new FileMetadata(3, "c.txt", "bob", 1L, List.of(), null);
+        when(metadataClient.beginDeleteBatch(List.of(1, 2, 3), "bob", "Bearer t")).thenReturn(List.of(
+                new FileDeletion(1, removable, null),
+                new FileDeletion(2, null, "Access denied"),
+                new FileDeletion(3, locked, null)));
+        DeleteError error = mock(DeleteError.class);
+        when(error.objectName()).thenReturn(locked.objectName());
+        when(error.code()).thenReturn("AccessDenied");
+        when(error.message()).thenReturn("locked");
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class))).thenReturn(List.of(new Result<>(error)));
+
+        List<DeleteResult> results = fileService.deleteFiles(List.of(1, 2, 3, 1), "bob", "Bearer t");
+
+        assertEquals(List.of(
+                DeleteResult.deleted(1),
+                DeleteResult.failed(2, "Access denied"),
+                DeleteResult.failed(3, "AccessDenied: locked")), results);
+        verify(minioClient, times(1)).removeObjects(any(RemoveObjectsArgs.class));
+        verify(metadataClient).deleteMetadataBatch(List.of(1), "Bearer t");
+    }
+
+    @Test
+    void deletionWithoutFileDoesNotFailTheChunk() {
+        FileMetadata removable = new FileMetadata(1, "a.txt", "bob", 1L, List.of(), null);
+        when(metadataClient.beginDeleteBatch(List.of(1, 2), "bob", "Bearer t")).thenReturn(List.of(
+                new FileDeletion(1, removable, null),
+                new FileDeletion(2, null, null)));
+        when(minioClient.removeObjects(any(RemoveObjectsArgs.class))).thenReturn(List.of());
+
+        List<DeleteResult> results = fileService.deleteFiles(List.of(1, 2), "bob", "Bearer t");
+
+        assertEquals(List.of(DeleteResult.deleted(1), DeleteResult.failed(2, "File not found")), results);
+        verify(metadataClient).deleteMetadataBatch(List.of(1), "Bearer t");
+    }
+
+    @Test
+    void singleDeleteOfForeignFileIsPermissionError() {
+        when(metadataClient.beginDeleteBatch(List.of(9), "bob", "Bearer t"))
+                .thenReturn(List.of(new FileDeletion(9, null, "File not found")));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> fileService.deleteFile(9, "bob", "Bearer t"));
+
+        assertTrue(e.getMessage().contains("permission"));
+        verify(minioClient, never()).removeObjects(any());
+        verify(metadataClient, never()).deleteMetadataBatch(anyList(), any());
+    }
+}
@@ -0,0 +1,82 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.service.DownloadCoalescer;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataCache;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DedupUploadTest {
+
+    private MinioClient minioClient;
+    private MetadataClient metadataClient;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioClient = mock(MinioClient.class);
+        metadataClient = mock(MetadataClient.class);
+        when(minioClient.bucketExists(any())).thenReturn(true);
+        fileService = new FileService(minioClient, metadataClient, new TransferBufferPool(1024, 2),
+                mock(MetadataCache.class), mock(ObjectCache.class), mock(DownloadCoalescer.class));
+        ReflectionTestUtils.setField(fileService, "dedupEnabled", true);
+    }
+
+    @Test
+    void secondUploadOfSameContentSkipsThePut() throws Exception {
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("installer".getBytes()));
+        when(metadataClient.saveMetadata(anyString(), anyLong(), anyString(), anyList(), eq(hash)))
+                .thenReturn(new FileMetadata(1, "setup.exe", "alice", 9L, List.of(), hash))
+                .thenReturn(new FileMetadata(2, "setup.exe", "bob", 9L, List.of(), hash));
+        when(minioClient.statObject(any(StatObjectArgs.class)))
+                .thenThrow(new ErrorResponseException(new ErrorResponse("NoSuchKey", "missing", "fileflow",
+                        "blobs/" + hash, null, null, null), null, null))
+                .thenReturn(mock(StatObjectResponse.class));
+
+        fileService.saveFile(new MockMultipartFile("file", "setup.exe", "application/octet-stream", "installer".getBytes()),
+                "alice", List.of());
+        fileService.saveFile(new MockMultipartFile("file", "setup.exe", "application/octet-stream", "installer".getBytes()),
+                "bob", List.of());
+
+        verify(minioClient, times(1)).putObject(argThat((PutObjectArgs args) -> args.object().equals("blobs/" + hash)));
+        verify(metadataClient).commitMetadata(List.of(1));
+        verify(metadataClient).commitMetadata(List.of(2));
+    }
+
+    @Test
+    void blobThatCantBeSharedIsStoredAsTheFilesOwnObject() throws Exception {
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("installer".getBytes()));
+        // the blob is being collected, metadata-service saved the row without contentHash
+        when(metadataClient.saveMetadata(anyString(), anyLong(), anyString(), anyList(), eq(hash)))
+                .thenReturn(new FileMetadata(3, "setup.exe", "carol", 9L, List.of(), null));
+        when(minioClient.statObject(any(StatObjectArgs.class)))
+                .thenThrow(new ErrorResponseException(new ErrorResponse("NoSuchKey", "missing", "fileflow",
+                        "carol/3_setup.exe", null, null, null), null, null));
+
+        fileService.saveFile(new MockMultipartFile("file", "setup.exe", "application/octet-stream", "installer".getBytes()),
+                "carol", List.of());
+
+        verify(metadataClient, times(1)).saveMetadata(anyString(), anyLong(), anyString(), anyList(), any());
+        verify(minioClient).putObject(argThat((PutObjectArgs args) -> args.object().equals("carol/3_setup.exe")));
+        verify(metadataClient).commitMetadata(List.of(3));
+    }
+}
@@ -0,0 +1,111 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.config.PresignMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.DirectUploadTicket;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import com.anthonydaniel.fileflow.filemanagement.service.DirectUploadService;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.UploadSessionStore;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DirectUploadTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private MinioClient minioClient;
+    private MultipartMinioClient multipartMinioClient;
+    private FileService fileService;
+    private UploadSessionStore sessionStore;
+    private DirectUploadService directUploadService;
+
+    @BeforeEach
+    void setUp() {
+        minioClient = mock(MinioClient.class);
+        multipartMinioClient = mock(MultipartMinioClient.class);
+        fileService = mock(FileService.class);
+        sessionStore = mock(UploadSessionStore.class);
+        when(fileService.getBucketName()).thenReturn("fileflow");
+        PresignMinioClient presignMinioClient = new PresignMinioClient(MinioClient.builder()
+                .endpoint("https://files.example.com")
+                .region("us-east-1")
+                .credentials("minioadmin", "minioadmin")
+                .build());
+        directUploadService = new DirectUploadService(minioClient, multipartMinioClient, presignMinioClient,
+                fileService, sessionStore, PART_SIZE, Duration.ofHours(1));
+    }
+
+    @Test
+    void smallFileIsOnePutAndCommittedOnceStored() throws Exception {
+        when(fileService.saveMetadata("notes.txt", 1000L, "alice", List.of())).thenReturn(3);
+
+        DirectUploadTicket ticket = directUploadService.createTicket(
+                new CreateUploadSessionRequest("notes.txt", 1000L, "text/plain", null, null), "alice");
+
+        assertEquals(1, ticket.urls().size());
+        assertTrue(ticket.urls().get(0).startsWith("https://files.example.com/fileflow/alice/3_notes.txt?"));
+        verifyNoInteractions(multipartMinioClient);
+
+        ArgumentCaptor<UploadSession> saved = ArgumentCaptor.forClass(UploadSession.class);
+        verify(sessionStore).save(saved.capture());
+        // no multipart upload, only the ticket for the reconciler to remove
+        verify(fileService).attachUploadSession(3, ticket.ticketId(), null);
+        when(sessionStore.find(ticket.ticketId())).thenReturn(Optional.of(saved.getValue()));
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(1000L);
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(stat);
+
+        assertEquals(3, directUploadService.complete(ticket.ticketId(), "alice"));
+        verify(fileService).commitUploads(List.of(3));
+        verify(sessionStore).delete(ticket.ticketId());
+    }
+
+    @Test
+    void multipartWithShortPartIsNotCompleted() throws Exception {
+        long size = PART_SIZE + 100L;
+        when(fileService.saveMetadata("video.mp4", size, "bob", List.of())).thenReturn(4);
+        when(multipartMinioClient.createUpload(eq("fileflow"), eq("bob/4_video.mp4"), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture("upload-1"));
+
+        DirectUploadTicket ticket = directUploadService.createTicket(
+                new CreateUploadSessionRequest("video.mp4", size, "video/mp4", null, null), "bob");
+
+        assertEquals(2, ticket.urls().size());
+        assertTrue(ticket.urls().get(1).contains("partNumber=2"));
+        assertTrue(ticket.urls().get(1).contains("uploadId=upload-1"));
+
+        ArgumentCaptor<UploadSession> saved = ArgumentCaptor.forClass(UploadSession.class);
+        verify(sessionStore).save(saved.capture());
+        verify(fileService).attachUploadSession(4, ticket.ticketId(), "upload-1");
+        when(sessionStore.find(ticket.ticketId())).thenReturn(Optional.of(saved.getValue()));
+        List<Part> parts = List.of(part(1, PART_SIZE), part(2, 99L));
+        when(multipartMinioClient.listParts("fileflow", "bob/4_video.mp4", "upload-1")).thenReturn(parts);
+
+        assertThrows(IllegalStateException.class, () -> directUploadService.complete(ticket.ticketId(), "bob"));
+        verify(multipartMinioClient, never()).completeUpload(any(), any(), any(), any());
+        verify(fileService, never()).commitUploads(any());
+    }
+
+    private Part part(int number, long size) {
+        Part part = mock(Part.class);
+        when(part.partNumber()).thenReturn(number);
+        when(part.partSize()).thenReturn(size);
+        return part;
+    }
+}
@@ -0,0 +1,267 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import com.anthonydaniel.fileflow.filemanagement.service.DownloadCoalescer;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadCoalescerTest {
+
+    private static final String CONTENT = "viral file content ".repeat(50);
+
+    @TempDir
+    Path directory;
+
+    private TransferBufferPool pool;
+    private ObjectCache objectCache;
+    private DownloadCoalescer downloadCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        pool = new TransferBufferPool(64, 4);
+        objectCache = new ObjectCache(true, directory, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), pool,
+                new SimpleMeterRegistry());
+        downloadCoalescer = new DownloadCoalescer(objectCache, pool, true, DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1));
+    }
+
+    @Test
+    void concurrentDownloadsShareOneFetch() throws Exception {
+        StoredObject object = object("v1", CONTENT.length());
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        DownloadCoalescer.Upstream upstream = (offset, length) -> {
+            fetches.incrementAndGet();
+            return gated(slice(offset, length), release);
+        };
+
+        List<Future<String>> downloads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(5)) {
+            for (int i = 0; i < 5; i++) {
+                downloads.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    downloadCoalescer.write(object, upstream, out);
+                    return out.toString();
+                }));
+            }
+            // every download has joined the flight while the first bytes are held back
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> download : downloads) {
+                assertEquals(CONTENT, download.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, fetches.get());
+        // the finished fetch became the cache entry
+        assertTrue(objectCache.find(object).isPresent());
+    }
+
+    @Test
+    void loneDownloadIsStreamedWithoutSpooling() throws Exception {
+        ObjectCache disabled = new ObjectCache(false, directory, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), pool,
+                new SimpleMeterRegistry());
+        DownloadCoalescer coalescer = new DownloadCoalescer(disabled, pool, true, DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1));
+        StoredObject object = object("v3", CONTENT.length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        coalescer.write(object, (offset, length) -> new ByteArrayInputStream(slice(offset, length)), out);
+
+        assertEquals(CONTENT, out.toString());
+        try (Stream<Path> files = Files.list(directory.resolve("fileflow-object-cache"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void lateJoinerReadsTheMissedPrefixSeparately() throws Exception {
+        ObjectCache disabled = new ObjectCache(false, directory, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), pool,
+                new SimpleMeterRegistry());
+        DownloadCoalescer coalescer = new DownloadCoalescer(disabled, pool, true, DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1));
+        StoredObject object = object("v4", CONTENT.length());
+        List<Long> opened = new ArrayList<>();
+        CountDownLatch firstChunkSent = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        DownloadCoalescer.Upstream upstream = (offset, length) -> {
+            synchronized (opened) {
+                opened.add(offset);
+                opened.add(length);
+            }
+            return new ByteArrayInputStream(slice(offset, length));
+        };
+        // the first client takes a chunk, then waits for the second download to join
+        OutputStream slowClient = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, len);
+                firstChunkSent.countDown();
+                try {
+                    joined.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<?> first = executor.submit(() -> {
+                coalescer.write(object, upstream, slowClient);
+                return null;
+            });
+            firstChunkSent.await(5, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                coalescer.write(object, upstream, out);
+                return out.toString();
+            });
+            Thread.sleep(200);
+            joined.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            assertEquals(CONTENT, second.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(CONTENT, slowClient.toString());
+        // one full read, then the 64 bytes the second download missed
+        assertEquals(List.of(0L, (long) CONTENT.length(), 0L, 64L), opened);
+        try (Stream<Path> files = Files.list(directory.resolve("fileflow-object-cache"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void exhaustedSpoolBudgetFallsBackToSeparateReads() throws Exception {
+        DownloadCoalescer coalescer = new DownloadCoalescer(objectCache, pool, true, DataSize.ofMegabytes(1),
+                DataSize.ofBytes(10));
+        StoredObject object = object("v5", CONTENT.length());
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        DownloadCoalescer.Upstream upstream = (offset, length) -> {
+            fetches.incrementAndGet();
+            return gated(slice(offset, length), release);
+        };
+
+        List<Future<String>> downloads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(3)) {
+            for (int i = 0; i < 3; i++) {
+                downloads.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    coalescer.write(object, upstream, out);
+                    return out.toString();
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> download : downloads) {
+                assertEquals(CONTENT, download.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(3, fetches.get());
+        assertTrue(objectCache.find(object).isEmpty());
+    }
+
+    @Test
+    void brokenFetchFailsTheDownload() {
+        StoredObject object = object("v2", CONTENT.length());
+        DownloadCoalescer.Upstream upstream = (offset, length) -> new ByteArrayInputStream(CONTENT.substring(0, 100).getBytes());
+
+        assertThrows(IOException.class, () -> downloadCoalescer.write(object, upstream, new ByteArrayOutputStream()));
+        assertTrue(objectCache.find(object).isEmpty());
+    }
+
+    @Test
+    void truncatedSpoolFailsTheFollowerInsteadOfSpinning() throws Exception {
+        StoredObject object = object("v3", CONTENT.length());
+        CountDownLatch drained = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // hands out every byte, then holds the end of the stream back
+        DownloadCoalescer.Upstream upstream = (offset, length) -> new ByteArrayInputStream(slice(offset, length)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (available() == 0) {
+                    drained.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<?> leader = executor.submit(() -> {
+                downloadCoalescer.write(object, upstream, new ByteArrayOutputStream());
+                return null;
+            });
+            assertTrue(drained.await(5, TimeUnit.SECONDS));
+            Path spool;
+            try (Stream<Path> files = Files.walk(directory)) {
+                spool = files.filter(Files::isRegularFile).findFirst().orElseThrow();
+            }
+            Files.write(spool, new byte[0]);
+
+            Future<?> follower = executor.submit(() -> {
+                downloadCoalescer.write(object, upstream, new ByteArrayOutputStream());
+                return null;
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static byte[] slice(long offset, long length) {
+        return CONTENT.substring((int) offset, (int) (offset + length)).getBytes();
+    }
+
+    private InputStream gated(byte[] content, CountDownLatch release) {
+        return new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, len);
+            }
+        };
+    }
+
+    private StoredObject object(String etag, long size) {
+        return new StoredObject(1, "viral.txt", "alice/1_viral.txt", size, etag, ZonedDateTime.now(), "text/plain");
+    }
+}
@@ -0,0 +1,52 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.anthonydaniel.fileflow.filemanagement.service.LocalTokenVerifier;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTokenVerifierTest {
+    private static final String SECRET = "DC8XFbaWxfIZQUz1ZW9ei1T6IW3cPuq1";
+
+    private final LocalTokenVerifier verifier =
+            new LocalTokenVerifier(SECRET, Duration.ofSeconds(30), 100, new SimpleMeterRegistry());
+
+    private String token(String secret, long expiresInMs) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject("alice")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + expiresInMs))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Test
+    void acceptsTokenSignedWithSharedSecret() {
+        String header = "Bearer " + token(SECRET, 60_000);
+
+        TokenValidationResponse first = verifier.validate(header);
+        TokenValidationResponse cached = verifier.validate(header);
+
+        assertTrue(first.isValid());
+        assertEquals("alice", first.getUsername());
+        assertTrue(cached.isValid());
+        assertEquals("alice", cached.getUsername());
+    }
+
+    @Test
+    void rejectsForeignExpiredAndMalformedTokens() {
+        assertFalse(verifier.validate("Bearer " + token("some-other-secret-that-is-32-bytes!", 60_000)).isValid());
+        assertFalse(verifier.validate("Bearer " + token(SECRET, -1_000)).isValid());
+        assertFalse(verifier.validate("Bearer not-a-jwt").isValid());
+        assertEquals("Invalid authorization header", verifier.validate("Basic abc").getMessage());
+    }
+}
@@ -0,0 +1,68 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.service.DownloadCoalescer;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataCache;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.minio.MinioClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class MetadataCacheTest {
+
+    @Test
+    void repeatedLookupsHitTheCacheUntilInvalidated() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetadataCache cache = new MetadataCache(100, Duration.ofMinutes(1), registry);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            FileMetadata metadata = cache.get(7, id -> {
+                loads.incrementAndGet();
+                return new FileMetadata(id, "report.pdf", "alice", 10L, List.of(), null);
+            });
+            assertEquals("alice/7_report.pdf", metadata.objectName());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "file-metadata").tag("result", "hit")
+                .functionCounter().count());
+
+        cache.invalidate(7);
+        cache.get(7, id -> {
+            loads.incrementAndGet();
+            return new FileMetadata(id, "report.pdf", "alice", 10L, List.of(), null);
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void freshlySavedRowIsNotResolvableBeforeItIsCommitted() {
+        MetadataClient metadataClient = mock(MetadataClient.class);
+        MetadataCache cache = new MetadataCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        FileService fileService = new FileService(mock(MinioClient.class), metadataClient, new TransferBufferPool(1024, 2),
+                cache, mock(ObjectCache.class), mock(DownloadCoalescer.class));
+        FileMetadata pending = new FileMetadata(7, "report.pdf", "alice", 10L, List.of(), null);
+        when(metadataClient.saveMetadata("report.pdf", 10L, "alice", List.of(), null)).thenReturn(pending);
+        // metadata-service only answers for committed rows
+        when(metadataClient.getMetadataById(7)).thenReturn(null).thenReturn(pending);
+
+        fileService.saveMetadata("report.pdf", 10L, "alice", List.of());
+        RuntimeException e = assertThrows(RuntimeException.class, () -> fileService.getMetadata(7));
+        assertEquals("File not found: 7", e.getMessage());
+
+        fileService.commitUploads(List.of(7));
+        assertEquals(pending, fileService.getMetadata(7));
+        verify(metadataClient, times(2)).getMetadataById(7);
+    }
+}
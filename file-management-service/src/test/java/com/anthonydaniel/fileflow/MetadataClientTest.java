@@ -0,0 +1,70 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class MetadataClientTest {
+
+    private MockRestServiceServer server;
+    private MetadataClient client;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        client = new MetadataClient(restTemplate, "http://metadata");
+    }
+
+    @Test
+    void tagIsSentAsVariableAndResultIsScopedPage() {
+        String tag = "x\") { id } #";
+        server.expect(requestTo("http://metadata/graphql"))
+                .andExpect(jsonPath("$.operationName").value("FilesByTags"))
+                .andExpect(jsonPath("$.variables.tags[0]").value(tag))
+                .andExpect(jsonPath("$.variables.username").value("alice"))
+                .andExpect(jsonPath("$.variables.first").value(2))
+                .andExpect(jsonPath("$.query").value(not(containsString(tag))))
+                .andRespond(withSuccess("""
+                        {"data":{"filesByTags":{
+                            "edges":[{"cursor":"c3","node":
+                                {"id":3,"fileName":"a.txt","owner":"alice","fileSize":5000000000,"tags":["x"]}}],
+                            "pageInfo":{"hasNextPage":true,"endCursor":"c3"}}}}
+                        """, MediaType.APPLICATION_JSON));
+
+        FilePage page = client.getFilesByTag(tag, "alice", 2, null, "Bearer t");
+
+        assertEquals(new FilePage(List.of(new FileMetadata(3, "a.txt", "alice", 5_000_000_000L, List.of("x"), null)),
+                "c3", true), page);
+        server.verify();
+    }
+
+    @Test
+    void missingFileIsNullAndGraphQlErrorsThrow() {
+        server.expect(requestTo("http://metadata/graphql"))
+                .andExpect(jsonPath("$.variables.id").value(9))
+                .andRespond(withSuccess("{\"data\":{\"getMetadataById\":null}}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://metadata/graphql"))
+                .andExpect(header("Authorization", "Bearer t"))
+                .andRespond(withSuccess("{\"errors\":[{\"message\":\"boom\"}],\"data\":null}",
+                        MediaType.APPLICATION_JSON));
+
+        assertNull(client.getMetadataById(9));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> client.hasFileAccess(9, "bob", "Bearer t"));
+        assertEquals("GraphQL error: boom", e.getMessage());
+        server.verify();
+    }
+}
@@ -0,0 +1,81 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ObjectCache objectCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        objectCache = new ObjectCache(true, directory.resolve("cache"), DataSize.ofKilobytes(1),
+                DataSize.ofBytes(100), new TransferBufferPool(16, 2), meterRegistry);
+    }
+
+    @Test
+    void putFileIsServedFromDiskUntilInvalidated() throws Exception {
+        StoredObject object = object("alice/1_notes.txt", "v1", "hello cached world");
+        assertTrue(objectCache.find(object).isEmpty());
+
+        Path file = objectCache.newFile();
+        Files.writeString(file, "hello cached world");
+        assertTrue(objectCache.put(object, file));
+
+        Path cached = objectCache.find(object).orElseThrow();
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        objectCache.transfer(cached, 6, 6, range);
+        assertEquals("cached", range.toString());
+
+        // another version of the same object is a different entry
+        assertTrue(objectCache.find(object("alice/1_notes.txt", "v2", "hello cached world")).isEmpty());
+        assertEquals(6, meterRegistry.get("file.object-cache.served").tag("source", "cache").counter().count());
+        assertEquals(18, meterRegistry.get("file.object-cache.size").gauge().value());
+
+        objectCache.invalidate("alice/1_notes.txt");
+        assertTrue(objectCache.find(object).isEmpty());
+    }
+
+    @Test
+    void objectsOverTheSizeLimitAreNotTaken() throws Exception {
+        Path file = objectCache.newFile();
+        Files.writeString(file, "x".repeat(101));
+        assertFalse(objectCache.put(object("bob/3_big.bin", "v1", "x".repeat(101)), file));
+    }
+
+    @Test
+    void startupOnlyClearsItsOwnSubdirectory() throws Exception {
+        Path shared = directory.resolve("shared");
+        Files.createDirectories(shared.resolve("fileflow-object-cache"));
+        Path leftover = Files.writeString(shared.resolve("fileflow-object-cache").resolve("old.tmp"), "stale");
+        Path unrelated = Files.writeString(shared.resolve("keep.txt"), "not ours");
+
+        new ObjectCache(false, shared, DataSize.ofKilobytes(1), DataSize.ofBytes(100), new TransferBufferPool(16, 2),
+                new SimpleMeterRegistry());
+
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(unrelated));
+    }
+
+    private StoredObject object(String objectName, String etag, String content) {
+        return new StoredObject(1, "file", objectName, content.length(), etag, ZonedDateTime.now(), "text/plain");
+    }
+}
@@ -0,0 +1,85 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.config.PresignMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.controller.FileController;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.PresignedUrl;
+import com.anthonydaniel.fileflow.filemanagement.service.DownloadCoalescer;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataCache;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import com.anthonydaniel.fileflow.filemanagement.service.TransferBufferPool;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.convert.ConversionFailedException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PresignedDownloadTest {
+
+    private MinioClient minioClient;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioClient = mock(MinioClient.class);
+        when(minioClient.bucketExists(any())).thenReturn(true);
+        fileService = new FileService(minioClient, mock(MetadataClient.class), new TransferBufferPool(1024, 2),
+                mock(MetadataCache.class), mock(ObjectCache.class), mock(DownloadCoalescer.class));
+        // region is set, so signing works without a MinIO to talk to
+        ReflectionTestUtils.setField(fileService, "presignMinioClient", new PresignMinioClient(MinioClient.builder()
+                .endpoint("https://files.example.com")
+                .region("us-east-1")
+                .credentials("minioadmin", "minioadmin")
+                .build()));
+        ReflectionTestUtils.setField(fileService, "downloadUrlExpiry", Duration.ofMinutes(5));
+    }
+
+    @Test
+    void urlPointsAtPublicEndpointAndKeepsTheFileName() {
+        Instant before = Instant.now();
+        PresignedUrl presigned = fileService.presignDownload(
+                new FileMetadata(7, "report.pdf", "alice", 10L, List.of(), null));
+        String url = URLDecoder.decode(presigned.url(), StandardCharsets.UTF_8);
+
+        assertTrue(url.startsWith("https://files.example.com/fileflow/alice/7_report.pdf?"), url);
+        assertTrue(url.contains("X-Amz-Expires=300"), url);
+        assertTrue(url.contains("response-content-disposition=attachment; filename=\"report.pdf\""), url);
+        assertFalse(presigned.expiresAt().isBefore(before.plus(Duration.ofMinutes(5))));
+        // nothing is fetched from MinIO to hand out a URL
+        verifyNoMoreInteractions(ignoreStubs(minioClient));
+    }
+
+    @Test
+    void downloadModeIsBoundFromTheOperatorSetting() {
+        // the conversion Spring Boot applies to @Value, so a typo in file.download.mode stops startup
+        ConversionService conversion = ApplicationConversionService.getSharedInstance();
+
+        assertEquals(FileController.DownloadMode.REDIRECT, conversion.convert("redirect", FileController.DownloadMode.class));
+        assertEquals(FileController.DownloadMode.URL, conversion.convert("url", FileController.DownloadMode.class));
+        assertThrows(ConversionFailedException.class, () -> conversion.convert("presigned", FileController.DownloadMode.class));
+    }
+
+    @Test
+    void blobBackedFileIsServedUnderItsOwnName() {
+        String hash = "a".repeat(64);
+        String url = URLDecoder.decode(fileService.presignDownload(
+                new FileMetadata(8, "setup.exe", "bob", 9L, List.of(), hash)).url(), StandardCharsets.UTF_8);
+
+        assertTrue(url.startsWith("https://files.example.com/fileflow/blobs/" + hash + "?"), url);
+        assertTrue(url.contains("filename=\"setup.exe\""), url);
+    }
+}
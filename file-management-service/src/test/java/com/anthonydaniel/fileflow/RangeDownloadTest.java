@@ -0,0 +1,149 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.controller.FileController;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.StoredObject;
+import com.anthonydaniel.fileflow.filemanagement.dto.TokenValidationResponse;
+import com.anthonydaniel.fileflow.filemanagement.service.AuthenticationService;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.ObjectCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RangeDownloadTest {
+
+    private static final String ETAG = "\"abc123\"";
+    private static final ZonedDateTime LAST_MODIFIED = ZonedDateTime.of(2026, 10, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private FileService fileService;
+    private ObjectCache objectCache;
+    private FileController controller;
+    private final StoredObject object = new StoredObject(7, "report.pdf", "alice/7_report.pdf", 100,
+            "abc123", LAST_MODIFIED, "application/pdf");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileService = mock(FileService.class);
+        objectCache = mock(ObjectCache.class);
+        AuthenticationService authenticationService = mock(AuthenticationService.class);
+        when(authenticationService.validateToken("Bearer t")).thenReturn(new TokenValidationResponse(true, "alice"));
+        FileMetadata metadata = new FileMetadata(7, "report.pdf", "alice", 100L, List.of(), null);
+        when(fileService.getMetadata(7)).thenReturn(metadata);
+        when(fileService.checkFileAccessPermission(metadata, "alice", "Bearer t")).thenReturn(true);
+        when(fileService.statFile(metadata)).thenReturn(object);
+        when(objectCache.find(object)).thenReturn(Optional.empty());
+        doAnswer(invocation -> {
+            try (InputStream in = invocation.getArgument(0)) {
+                in.transferTo(invocation.getArgument(1, OutputStream.class));
+            }
+            return null;
+        }).when(objectCache).copy(any(), any());
+
+        controller = new FileController(fileService, mock(MetadataClient.class));
+        ReflectionTestUtils.setField(controller, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(controller, "objectCache", objectCache);
+        ReflectionTestUtils.setField(controller, "downloadMode", FileController.DownloadMode.STREAM);
+    }
+
+    @Test
+    void singleRangeIsServedAsPartialContent() throws Exception {
+        when(fileService.openFile(object, 10, 20)).thenReturn(new ByteArrayInputStream(new byte[20]));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=10-29");
+
+        ResponseEntity<?> response = download(headers);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 10-29/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(20, response.getHeaders().getContentLength());
+        assertEquals(ETAG, response.getHeaders().getETag());
+        // MinIO is only asked for the range once the body is written
+        verify(fileService, never()).openFile(any(StoredObject.class), anyLong(), anyLong());
+        assertEquals(20, writeBody(response).length);
+        verify(fileService).openFile(object, 10, 20);
+    }
+
+    @Test
+    void unsatisfiableRangeGets416WithTheSize() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=200-300");
+
+        ResponseEntity<?> response = download(headers);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void weakOrStaleIfRangeGetsTheWholeFile() {
+        for (String ifRange : List.of("W/" + ETAG, "\"older\"")) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RANGE, "bytes=10-29");
+            headers.set(HttpHeaders.IF_RANGE, ifRange);
+
+            ResponseEntity<?> response = download(headers);
+
+            assertEquals(HttpStatus.OK, response.getStatusCode(), ifRange);
+            assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE), ifRange);
+            assertEquals(100, response.getHeaders().getContentLength(), ifRange);
+        }
+    }
+
+    @Test
+    void matchingIfRangeKeepsTheRange() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=90-");
+        headers.set(HttpHeaders.IF_RANGE, ETAG);
+
+        ResponseEntity<?> response = download(headers);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 90-99/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void matchingEtagIsNotModified() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(List.of("\"other\"", "W/" + ETAG));
+        // If-None-Match wins, the date alone would say modified
+        headers.setIfModifiedSince(LAST_MODIFIED.minusDays(1).toInstant().toEpochMilli());
+
+        ResponseEntity<?> response = download(headers);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(ETAG, response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(fileService, never()).openFile(any(StoredObject.class), anyLong(), anyLong());
+    }
+
+    private ResponseEntity<?> download(HttpHeaders headers) {
+        return controller.downloadFile(7, "Bearer t", headers, new MockHttpServletRequest());
+    }
+
+    private static byte[] writeBody(ResponseEntity<?> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,171 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.CreateUploadSessionRequest;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSession;
+import com.anthonydaniel.fileflow.filemanagement.dto.UploadSessionStatus;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.ResumableUploadService;
+import com.anthonydaniel.fileflow.filemanagement.service.UploadSessionStore;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ResumableUploadTest {
+
+    private static final int CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final String OBJECT = "alice/9_movie.mkv";
+
+    private MultipartMinioClient multipartMinioClient;
+    private FileService fileService;
+    private UploadSessionStore sessionStore;
+    private ResumableUploadService resumableUploadService;
+    // two full chunks and a short last one
+    private final UploadSession session = new UploadSession(UUID.randomUUID().toString(), 9, "alice", "movie.mkv",
+            "video/x-matroska", 2L * CHUNK_SIZE + 10, CHUNK_SIZE, OBJECT, "upload-1", List.of(), 0L);
+
+    @BeforeEach
+    void setUp() {
+        multipartMinioClient = mock(MultipartMinioClient.class);
+        fileService = mock(FileService.class);
+        sessionStore = mock(UploadSessionStore.class);
+        when(fileService.getBucketName()).thenReturn("fileflow");
+        when(sessionStore.find(session.sessionId())).thenReturn(Optional.of(session));
+        resumableUploadService = new ResumableUploadService(multipartMinioClient, fileService, sessionStore, CHUNK_SIZE);
+    }
+
+    @Test
+    void newSessionIsRecordedOnTheIntentBeforeItIsStored() throws Exception {
+        when(fileService.saveMetadata("movie.mkv", session.fileSize(), "alice", List.of())).thenReturn(9);
+        when(multipartMinioClient.createUpload(eq("fileflow"), eq(OBJECT), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture("upload-1"));
+
+        UploadSession created = resumableUploadService.createSession(new CreateUploadSessionRequest("movie.mkv",
+                session.fileSize(), "video/x-matroska", CHUNK_SIZE, null), "alice");
+
+        // the reconciler can only clean up what the intent knows about
+        var order = inOrder(fileService, sessionStore);
+        order.verify(fileService).attachUploadSession(9, created.sessionId(), "upload-1");
+        order.verify(sessionStore).save(created);
+    }
+
+    @Test
+    void failedAttachAbortsTheUploadAndDiscardsTheRow() throws Exception {
+        when(fileService.saveMetadata("movie.mkv", session.fileSize(), "alice", List.of())).thenReturn(9);
+        when(multipartMinioClient.createUpload(eq("fileflow"), eq(OBJECT), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture("upload-1"));
+        when(multipartMinioClient.abortUpload(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        doThrow(new RuntimeException("No pending upload for fileId: 9"))
+                .when(fileService).attachUploadSession(eq(9), any(), eq("upload-1"));
+
+        assertThrows(RuntimeException.class, () -> resumableUploadService.createSession(new CreateUploadSessionRequest(
+                "movie.mkv", session.fileSize(), "video/x-matroska", CHUNK_SIZE, null), "alice"));
+
+        verify(multipartMinioClient).abortUpload("fileflow", OBJECT, "upload-1");
+        verify(fileService).discardMetadata(9);
+        verify(sessionStore, never()).save(any());
+    }
+
+    @Test
+    void chunkIsStoredAsItsPart() throws Exception {
+        when(multipartMinioClient.uploadPart(any(), any(), any(), anyInt(), any(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(new Part(3, "etag-3")));
+        List<Part> stored = List.of(part(3, 10));
+        when(multipartMinioClient.listParts("fileflow", OBJECT, "upload-1")).thenReturn(stored);
+
+        UploadSessionStatus status = resumableUploadService.uploadChunk(session.sessionId(), "alice", 2,
+                2L * CHUNK_SIZE, 10, new ByteArrayInputStream(new byte[10]));
+
+        verify(multipartMinioClient).uploadPart(eq("fileflow"), eq(OBJECT), eq("upload-1"), eq(3), any(), eq(10));
+        assertEquals(List.of(2), status.uploadedChunks());
+        assertEquals(10, status.bytesUploaded());
+    }
+
+    @Test
+    void chunksOutsideTheLayoutAreRejected() {
+        // index outside the file, wrong offset, wrong declared length, and bodies shorter or longer than the chunk
+        assertThrows(IllegalArgumentException.class, () -> upload(3, 3L * CHUNK_SIZE, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> upload(-1, 0, CHUNK_SIZE, CHUNK_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> upload(1, 0, CHUNK_SIZE, CHUNK_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> upload(2, 2L * CHUNK_SIZE, 11, 11));
+        assertThrows(IllegalArgumentException.class, () -> upload(2, 2L * CHUNK_SIZE, -1, 9));
+        assertThrows(IllegalArgumentException.class, () -> upload(2, 2L * CHUNK_SIZE, -1, 11));
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    void anotherUsersSessionIsRejected() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> resumableUploadService.getStatus(session.sessionId(), "mallory"));
+        assertTrue(e.getMessage().contains("permission"));
+        assertThrows(RuntimeException.class, () -> resumableUploadService.abort(session.sessionId(), "mallory"));
+        assertThrows(IllegalArgumentException.class, () -> resumableUploadService.getStatus("../alice", "alice"));
+        verifyNoInteractions(multipartMinioClient);
+        verify(fileService, never()).discardMetadata(any());
+        verify(sessionStore, never()).delete(any());
+    }
+
+    @Test
+    void completeAssemblesThePartsInOrderAndCleansUp() throws Exception {
+        List<Part> stored = List.of(part(3, 10), part(1, CHUNK_SIZE), part(2, CHUNK_SIZE));
+        when(multipartMinioClient.listParts("fileflow", OBJECT, "upload-1")).thenReturn(stored);
+        when(multipartMinioClient.completeUpload(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(9, resumableUploadService.complete(session.sessionId(), "alice"));
+
+        ArgumentCaptor<Part[]> parts = ArgumentCaptor.forClass(Part[].class);
+        verify(multipartMinioClient).completeUpload(eq("fileflow"), eq(OBJECT), eq("upload-1"), parts.capture());
+        assertEquals(List.of(1, 2, 3), Arrays.stream(parts.getValue()).map(Part::partNumber).toList());
+        verify(fileService).commitUploads(List.of(9));
+        verify(sessionStore).delete(session.sessionId());
+    }
+
+    @Test
+    void incompleteUploadIsNotCompleted() throws Exception {
+        List<Part> stored = List.of(part(1, CHUNK_SIZE), part(3, 10));
+        when(multipartMinioClient.listParts("fileflow", OBJECT, "upload-1")).thenReturn(stored);
+
+        assertThrows(IllegalStateException.class, () -> resumableUploadService.complete(session.sessionId(), "alice"));
+
+        verify(multipartMinioClient, never()).completeUpload(any(), any(), any(), any());
+        verify(fileService, never()).commitUploads(any());
+        verify(sessionStore, never()).delete(any());
+    }
+
+    @Test
+    void abortDropsTheUploadTheRowAndTheSession() throws Exception {
+        when(multipartMinioClient.abortUpload(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        resumableUploadService.abort(session.sessionId(), "alice");
+
+        verify(multipartMinioClient).abortUpload("fileflow", OBJECT, "upload-1");
+        verify(fileService).discardMetadata(9);
+        verify(sessionStore).delete(session.sessionId());
+    }
+
+    private UploadSessionStatus upload(int index, long offset, long contentLength, int bodyLength) {
+        return resumableUploadService.uploadChunk(session.sessionId(), "alice", index, offset, contentLength,
+                new ByteArrayInputStream(new byte[bodyLength]));
+    }
+
+    private Part part(int number, long size) {
+        Part part = mock(Part.class);
+        when(part.partNumber()).thenReturn(number);
+        when(part.partSize()).thenReturn(size);
+        when(part.etag()).thenReturn("etag-" + number);
+        return part;
+    }
+}
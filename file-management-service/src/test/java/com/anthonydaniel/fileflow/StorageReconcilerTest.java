@@ -0,0 +1,253 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileIntent;
+import com.anthonydaniel.fileflow.filemanagement.dto.FileMetadata;
+import com.anthonydaniel.fileflow.filemanagement.dto.FilePage;
+import com.anthonydaniel.fileflow.filemanagement.dto.ReconciliationReport;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.MetadataClient;
+import com.anthonydaniel.fileflow.filemanagement.service.StorageReconciler;
+import com.anthonydaniel.fileflow.filemanagement.service.UploadSessionStore;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StorageReconcilerTest {
+
+    private FileService fileService;
+    private MetadataClient metadataClient;
+    private MultipartMinioClient multipartMinioClient;
+    private UploadSessionStore sessionStore;
+    private StorageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileService = mock(FileService.class);
+        metadataClient = mock(MetadataClient.class);
+        multipartMinioClient = mock(MultipartMinioClient.class);
+        sessionStore = mock(UploadSessionStore.class);
+        when(fileService.getBucketName()).thenReturn("fileflow");
+        // nothing is stored unless a test says so
+        when(fileService.objectSize(any())).thenReturn(null);
+        reconciler = new StorageReconciler(fileService, metadataClient, multipartMinioClient, sessionStore,
+                Duration.ofMinutes(15), Duration.ofHours(24), Duration.ofHours(1), 100);
+    }
+
+    @Test
+    void finishesOrUndoesStuckIntents() throws Exception {
+        FileMetadata stored = file(1);
+        FileMetadata inProgress = file(2);
+        FileMetadata abandoned = file(3);
+        FileMetadata deleting = file(4);
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.UPLOAD, stored, LocalDateTime.now().minusHours(1)),
+                intent(FileIntent.Action.UPLOAD, inProgress, LocalDateTime.now().minusHours(1)),
+                intent(FileIntent.Action.UPLOAD, abandoned, LocalDateTime.now().minusDays(2)),
+                intent(FileIntent.Action.DELETE, deleting, LocalDateTime.now().minusHours(1))));
+        when(fileService.objectSize(stored.objectName())).thenReturn(1L);
+
+        reconciler.reconcileIntents();
+
+        verify(metadataClient).commitMetadata(List.of(1));
+        verify(fileService, never()).discardMetadata(2);
+        verify(fileService).discardMetadata(3);
+        verify(fileService).removeObject(deleting.objectName());
+        verify(metadataClient).deleteMetadata(4, null);
+        verifyNoInteractions(multipartMinioClient, sessionStore);
+    }
+
+    @Test
+    void abandonedSessionIsAbortedAndRemovedBeforeTheRow() throws Exception {
+        FileMetadata abandoned = file(3);
+        FileMetadata alreadyAborted = file(8);
+        ErrorResponseException noSuchUpload = minioError("NoSuchUpload");
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.UPLOAD, abandoned, LocalDateTime.now().minusDays(2), "s-3", "upload-3"),
+                intent(FileIntent.Action.UPLOAD, alreadyAborted, LocalDateTime.now().minusDays(2), "s-8", "upload-8")));
+        when(multipartMinioClient.abortUpload("fileflow", abandoned.objectName(), "upload-3"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(multipartMinioClient.abortUpload("fileflow", alreadyAborted.objectName(), "upload-8"))
+                .thenReturn(CompletableFuture.failedFuture(noSuchUpload));
+
+        reconciler.reconcileIntents();
+
+        var order = inOrder(multipartMinioClient, sessionStore, fileService);
+        order.verify(multipartMinioClient).abortUpload("fileflow", abandoned.objectName(), "upload-3");
+        order.verify(sessionStore).remove("s-3");
+        order.verify(fileService).discardMetadata(3);
+        verify(sessionStore).remove("s-8");
+        verify(fileService).discardMetadata(8);
+    }
+
+    @Test
+    void uploadOfTheWrongSizeIsRemovedInsteadOfCommitted() throws Exception {
+        FileMetadata oversized = file(3);
+        FileMetadata deduplicated = new FileMetadata(6, "6.txt", "bob", 1L, List.of(), "d".repeat(64));
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.UPLOAD, oversized, LocalDateTime.now().minusHours(1), "s-3", null),
+                intent(FileIntent.Action.UPLOAD, deduplicated, LocalDateTime.now().minusHours(1))));
+        // a presigned PUT took far more than the declared byte
+        when(fileService.objectSize(oversized.objectName())).thenReturn(5L * 1024 * 1024 * 1024);
+        when(fileService.objectSize(deduplicated.objectName())).thenReturn(2L);
+
+        reconciler.reconcileIntents();
+
+        verify(metadataClient, never()).commitMetadata(any());
+        var order = inOrder(fileService, sessionStore);
+        order.verify(fileService).removeObject(oversized.objectName());
+        order.verify(sessionStore).remove("s-3");
+        order.verify(fileService).discardMetadata(3);
+        // other files may share the blob
+        verify(fileService, never()).removeObject(deduplicated.objectName());
+        verify(fileService).discardMetadata(6);
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    void committedSessionUploadAlsoDropsTheSession() throws Exception {
+        FileMetadata stored = file(2);
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.UPLOAD, stored, LocalDateTime.now().minusHours(1), "s-2", "upload-2")));
+        when(fileService.objectSize(stored.objectName())).thenReturn(1L);
+
+        reconciler.reconcileIntents();
+
+        verify(metadataClient).commitMetadata(List.of(2));
+        verify(sessionStore).delete("s-2");
+        verify(fileService, never()).discardMetadata(any());
+        verifyNoInteractions(multipartMinioClient);
+    }
+
+    @Test
+    void failedAbortKeepsTheIntentForTheNextRun() throws Exception {
+        FileMetadata abandoned = file(3);
+        ErrorResponseException accessDenied = minioError("AccessDenied");
+        when(multipartMinioClient.abortUpload("fileflow", abandoned.objectName(), "upload-3"))
+                .thenReturn(CompletableFuture.failedFuture(accessDenied));
+
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.UPLOAD, abandoned, LocalDateTime.now().minusDays(2), "s-3", "upload-3")));
+
+        reconciler.reconcileIntents();
+
+        verify(sessionStore, never()).remove(any());
+        verify(fileService, never()).discardMetadata(any());
+    }
+
+    @Test
+    void scanReportsOrphanObjectsAndMissingObjects() {
+        when(fileService.listObjects()).thenReturn(List.of(
+                new Result<>(item("bob/1_a.txt")),
+                new Result<>(item(UploadSessionStore.PREFIX + "0b7c2f1e.json")),
+                new Result<>(item("bob/7_orphan.txt")),
+                new Result<>(item("stray.bin"))));
+        when(metadataClient.getExistingFileIds(anyList())).thenReturn(List.of(1));
+        when(metadataClient.getAllMetadata(eq(100), isNull())).thenReturn(new FilePage(List.of(file(1)), "c1", true));
+        when(metadataClient.getAllMetadata(100, "c1")).thenReturn(new FilePage(List.of(file(5)), "c5", false));
+
+        ReconciliationReport report = reconciler.scan();
+
+        assertEquals(3, report.objectsScanned());
+        assertEquals(2, report.rowsScanned());
+        assertEquals(List.of("stray.bin", "bob/7_orphan.txt"), report.orphanObjects());
+        assertEquals(List.of(5), report.missingObjects());
+        assertEquals(report, reconciler.getLastReport());
+    }
+
+    @Test
+    void scanChecksEveryBlobOnceAcrossBatches() {
+        List<Result<Item>> objects = new ArrayList<>();
+        List<String> referenced = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            String hash = String.format("%064x", i);
+            objects.add(new Result<>(item("blobs/" + hash)));
+            // every tenth blob has no entry in metadata-service
+            if (i % 10 != 0) {
+                referenced.add(hash);
+            }
+        }
+        for (int id = 1; id <= 700; id++) {
+            objects.add(new Result<>(item("bob/" + id + "_f.txt")));
+        }
+        objects.add(new Result<>(item("bob/99999999999_overflow.txt")));
+        when(fileService.listObjects()).thenReturn(objects);
+        when(metadataClient.getExistingBlobs(anyList())).thenAnswer(call -> {
+            List<String> hashes = call.getArgument(0);
+            return hashes.stream().filter(referenced::contains).toList();
+        });
+        when(metadataClient.getExistingFileIds(anyList())).thenAnswer(call -> call.getArgument(0));
+        when(metadataClient.getAllMetadata(eq(100), isNull())).thenReturn(new FilePage(List.of(), null, false));
+
+        ReconciliationReport report = reconciler.scan();
+
+        assertEquals(1901, report.objectsScanned());
+        // 120 unreferenced blobs and the id that can't be a file id
+        assertEquals(121, report.orphanObjectCount());
+        verify(metadataClient, times(3)).getExistingBlobs(anyList());
+        verify(metadataClient, times(2)).getExistingFileIds(anyList());
+    }
+
+    @Test
+    void collectsReleasedBlobsAndLeavesFailedOnesClaimed() {
+        String kept = "b".repeat(64);
+        String gone = "c".repeat(64);
+        when(metadataClient.claimReleasedBlobs(3600, 100)).thenReturn(List.of(gone, kept));
+        when(fileService.removeObjects(List.of("blobs/" + gone, "blobs/" + kept)))
+                .thenReturn(Map.of("blobs/" + kept, "AccessDenied: locked"));
+
+        reconciler.collectReleasedBlobs();
+
+        verify(metadataClient).deleteBlobs(List.of(gone));
+    }
+
+    @Test
+    void deleteIntentOfSharedBlobLeavesTheObject() throws Exception {
+        FileMetadata deduplicated = new FileMetadata(6, "6.txt", "bob", 1L, List.of(), "d".repeat(64));
+        when(metadataClient.getPendingIntents(900, 100)).thenReturn(List.of(
+                intent(FileIntent.Action.DELETE, deduplicated, LocalDateTime.now().minusHours(1))));
+
+        reconciler.reconcileIntents();
+
+        verify(fileService, never()).removeObject(any());
+        verify(metadataClient).deleteMetadata(6, null);
+    }
+
+    private static FileMetadata file(int id) {
+        return new FileMetadata(id, id + ".txt", "bob", 1L, List.of(), null);
+    }
+
+    private static FileIntent intent(FileIntent.Action action, FileMetadata file, LocalDateTime createdAt) {
+        return intent(action, file, createdAt, null, null);
+    }
+
+    private static FileIntent intent(FileIntent.Action action, FileMetadata file, LocalDateTime createdAt,
+                                     String sessionId, String uploadId) {
+        return new FileIntent(file.id(), action, createdAt.toString(), file, sessionId, uploadId);
+    }
+
+    private static ErrorResponseException minioError(String code) {
+        ErrorResponseException error = mock(ErrorResponseException.class);
+        when(error.errorResponse()).thenReturn(new ErrorResponse(code, code, "fileflow", null, null, null, null));
+        return error;
+    }
+
+    private static Item item(String objectName) {
+        return new Item(objectName) {
+        };
+    }
+}
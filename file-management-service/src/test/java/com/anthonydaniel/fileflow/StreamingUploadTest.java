@@ -0,0 +1,108 @@
+package com.anthonydaniel.fileflow;
+
+import com.anthonydaniel.fileflow.filemanagement.config.MultipartMinioClient;
+import com.anthonydaniel.fileflow.filemanagement.service.FileService;
+import com.anthonydaniel.fileflow.filemanagement.service.StreamingUploadService;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StreamingUploadTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final String BOUNDARY = "fileflow-boundary";
+
+    private MultipartMinioClient multipartMinioClient;
+    private FileService fileService;
+    private StreamingUploadService streamingUploadService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        multipartMinioClient = mock(MultipartMinioClient.class);
+        fileService = mock(FileService.class);
+        when(fileService.getBucketName()).thenReturn("fileflow");
+        when(fileService.saveMetadata("big.bin", 0, "alice", List.of("work"))).thenReturn(5);
+        when(multipartMinioClient.createUpload(eq("fileflow"), eq("alice/5_big.bin"), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture("upload-1"));
+        streamingUploadService = new StreamingUploadService(multipartMinioClient, fileService, PART_SIZE, 4, -1);
+    }
+
+    @Test
+    void partsAreCompletedInOrderAndTheSizeIsRecorded() throws Exception {
+        long size = 2L * PART_SIZE + 123;
+        // the first part finishes last, the completion list still has to be in part order
+        when(multipartMinioClient.uploadPart(eq("fileflow"), eq("alice/5_big.bin"), eq("upload-1"), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    int partNumber = invocation.getArgument(3);
+                    return CompletableFuture.supplyAsync(() -> new Part(partNumber, "etag-" + partNumber),
+                            CompletableFuture.delayedExecutor(partNumber == 1 ? 200 : 0, TimeUnit.MILLISECONDS));
+                });
+        when(multipartMinioClient.completeUpload(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        String result = streamingUploadService.uploadStream(request(size), "alice");
+
+        assertEquals("File uploaded successfully. FileID: 5", result);
+        verify(multipartMinioClient).uploadPart(any(), any(), any(), eq(3), any(), eq(123));
+        ArgumentCaptor<Part[]> parts = ArgumentCaptor.forClass(Part[].class);
+        verify(multipartMinioClient).completeUpload(eq("fileflow"), eq("alice/5_big.bin"), eq("upload-1"), parts.capture());
+        assertEquals(List.of(1, 2, 3), Arrays.stream(parts.getValue()).map(Part::partNumber).toList());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"), Arrays.stream(parts.getValue()).map(Part::etag).toList());
+        // the row has its size before the object appears
+        var order = inOrder(fileService, multipartMinioClient);
+        order.verify(fileService).updateFileSize(5, size);
+        order.verify(multipartMinioClient).completeUpload(any(), any(), any(), any());
+        order.verify(fileService).commitUploads(List.of(5));
+    }
+
+    @Test
+    void failedPartAbortsTheUploadAndDiscardsTheRow() throws Exception {
+        when(multipartMinioClient.uploadPart(any(), any(), any(), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> {
+                    int partNumber = invocation.getArgument(3);
+                    return partNumber == 2
+                            ? CompletableFuture.failedFuture(new RuntimeException("connection reset"))
+                            : CompletableFuture.completedFuture(new Part(partNumber, "etag-" + partNumber));
+                });
+        when(multipartMinioClient.abortUpload(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThrows(RuntimeException.class,
+                () -> streamingUploadService.uploadStream(request(2L * PART_SIZE + 1), "alice"));
+
+        verify(multipartMinioClient, never()).completeUpload(any(), any(), any(), any());
+        verify(multipartMinioClient).abortUpload("fileflow", "alice/5_big.bin", "upload-1");
+        verify(fileService).discardMetadata(5);
+        verify(fileService, never()).commitUploads(any());
+    }
+
+    // tags before the file, the order the streaming endpoint requires
+    private MockHttpServletRequest request(long fileSize) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"tags[]\"\r\n\r\n"
+                + "work\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"big.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(new byte[(int) fileSize]);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/files/upload-stream");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body.toByteArray());
+        return request;
+    }
+}
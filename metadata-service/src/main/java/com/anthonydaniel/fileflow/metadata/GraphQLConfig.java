@@ -1,9 +1,18 @@
 package com.anthonydaniel.fileflow.metadata;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.scalars.ExtendedScalars;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.graphql.execution.RuntimeWiringConfigurer;
 
+import java.util.concurrent.CompletableFuture;
+
 @Configuration
 public class GraphQLConfig {
     @Bean
@@ -11,6 +20,28 @@ public class GraphQLConfig {
         return wiringBuilder -> wiringBuilder
                 .scalar(graphql.Scalars.GraphQLID)
                 .scalar(graphql.Scalars.GraphQLString)
-                .scalar(graphql.Scalars.GraphQLInt);
+                .scalar(graphql.Scalars.GraphQLInt)
+                .scalar(ExtendedScalars.GraphQLLong);
+    }
+
+    // clients send a handful of constant documents with variables, so parse + validate is done once per document
+    @Bean
+    public GraphQlSourceBuilderCustomizer preparsedDocumentCache(
+            @Value("${graphql.document-cache.max-size:500}") long maxSize) {
+        Cache<String, PreparsedDocumentEntry> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+        PreparsedDocumentProvider provider = (executionInput, parseAndValidate) -> {
+            PreparsedDocumentEntry entry = cache.getIfPresent(executionInput.getQuery());
+            if (entry == null) {
+                entry = parseAndValidate.apply(executionInput);
+                // invalid documents aren't kept, they'd only crowd out the real ones
+                if (!entry.hasErrors()) {
+                    cache.put(executionInput.getQuery(), entry);
+                }
+            }
+            return CompletableFuture.completedFuture(entry);
+        };
+        return builder -> builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(provider));
     }
-}
\ No newline at end of file
+}
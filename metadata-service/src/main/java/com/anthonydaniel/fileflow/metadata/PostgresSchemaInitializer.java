@@ -0,0 +1,102 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/*
+ * Schema pieces ddl-auto can't express, applied on startup when running against PostgreSQL.
+ * Every statement is idempotent, so all instances can run this on every start.
+ */
+@Component
+public class PostgresSchemaInitializer implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresSchemaInitializer.class);
+
+    private final DataSource dataSource;
+    private final MetadataService metadataService;
+
+    public PostgresSchemaInitializer(DataSource dataSource, MetadataService metadataService) {
+        this.dataSource = dataSource;
+        this.metadataService = metadataService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return;
+            }
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        advanceFileMetadataSequence(jdbcTemplate);
+        widenFileSize(jdbcTemplate);
+        backfillFileStatus(jdbcTemplate);
+        try {
+            createSearchIndexes(jdbcTemplate);
+        } catch (Exception e) {
+            logger.warn("Could not create search indexes (pg_trgm needs CREATE privilege): {}", e.getMessage());
+        }
+        // without the extension similarity() and % don't exist, searchFiles has to stay on substring matching
+        boolean trigram = hasTrigramExtension(jdbcTemplate);
+        metadataService.setTrigramSearch(trigram);
+        if (!trigram) {
+            logger.warn("pg_trgm is not installed, searchFiles falls back to unranked substring matching");
+        }
+    }
+
+    /*
+     * file_metadata ids used to come from an IDENTITY column. Databases created before the switch to
+     * file_metadata_seq already have rows, so the new sequence is moved past the highest existing id once,
+     * otherwise the first inserts would collide. Does nothing when the sequence is already ahead.
+     */
+    private void advanceFileMetadataSequence(JdbcTemplate jdbcTemplate) {
+        // + allocationSize so the pooled optimizer's first block starts above every existing id
+        jdbcTemplate.query("""
+                SELECT setval('file_metadata_seq', (SELECT COALESCE(MAX(id), 0) FROM file_metadata) + 50)
+                WHERE (SELECT last_value FROM file_metadata_seq) <= (SELECT COALESCE(MAX(id), 0) FROM file_metadata)
+                """, resultSet -> {});
+    }
+
+    /*
+     * file_size used to be an int. ddl-auto doesn't change the type of an existing column, so databases
+     * from before that still reject streamed, resumable and direct uploads over 2 GiB. Only altered while
+     * it isn't bigint yet, the rewrite and its exclusive lock happen once.
+     */
+    private void widenFileSize(JdbcTemplate jdbcTemplate) {
+        String type = jdbcTemplate.query("""
+                SELECT data_type FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = 'file_metadata' AND column_name = 'file_size'
+                """, resultSet -> resultSet.next() ? resultSet.getString(1) : null);
+        if (type != null && !"bigint".equals(type)) {
+            jdbcTemplate.execute("ALTER TABLE file_metadata ALTER COLUMN file_size TYPE bigint");
+            logger.info("Widened file_metadata.file_size from {} to bigint", type);
+        }
+    }
+
+    // rows from before the upload outbox were all written after their object was stored
+    private void backfillFileStatus(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("UPDATE file_metadata SET status = 'COMMITTED' WHERE status IS NULL");
+    }
+
+    private boolean hasTrigramExtension(JdbcTemplate jdbcTemplate) {
+        Integer installed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_extension WHERE extname = 'pg_trgm'", Integer.class);
+        return installed != null && installed > 0;
+    }
+
+    // searchFiles: trigram GIN for substring/fuzzy matches, text_pattern_ops btree for short prefix matches
+    private void createSearchIndexes(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_file_metadata_file_name_trgm "
+                + "ON file_metadata USING gin (lower(file_name) gin_trgm_ops)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_file_metadata_file_name_prefix "
+                + "ON file_metadata (lower(file_name) text_pattern_ops)");
+    }
+}
@@ -1,11 +1,14 @@
 package com.anthonydaniel.fileflow.metadata.graphql;
 
+import com.anthonydaniel.fileflow.metadata.model.FileAccess;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
 import com.anthonydaniel.fileflow.metadata.model.FileShare;
 import com.anthonydaniel.fileflow.metadata.service.FileShareService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Window;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.query.ScrollSubrange;
 import org.springframework.stereotype.Controller;
 
 import java.util.Collections;
@@ -39,6 +42,17 @@ public class FileShareQueryResolver {
         }
     }
 
+    // paginated versions of the two listings above
+    @QueryMapping
+    public Window<FileShare> sharesWithMe(@Argument String username, ScrollSubrange subrange) {
+        return fileShareService.getFilesSharedWithUser(username, Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
+    @QueryMapping
+    public Window<FileShare> sharesByMe(@Argument String username, ScrollSubrange subrange) {
+        return fileShareService.getFilesSharedByUser(username, Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
     // for a file id, returns who its shared to
     @QueryMapping
     public List<FileShare> getSharesForFile(@Argument Integer fileId) {
@@ -59,4 +73,10 @@ public class FileShareQueryResolver {
             return false; //return fale instead of errors
         }
     }
+
+    // same as hasFileAccess for a whole page of files, one request and one query
+    @QueryMapping
+    public List<FileAccess> hasFileAccessBatch(@Argument List<Integer> fileIds, @Argument String username) {
+        return fileShareService.hasFileAccessBatch(fileIds, username);
+    }
 }
\ No newline at end of file
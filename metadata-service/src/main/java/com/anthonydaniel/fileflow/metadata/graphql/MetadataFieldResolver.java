@@ -0,0 +1,28 @@
+package com.anthonydaniel.fileflow.metadata.graphql;
+
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileShare;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+import java.util.Map;
+
+// fields resolved for every object of a response at once (DataLoader), instead of one select per object
+@Controller
+public class MetadataFieldResolver {
+    @Autowired
+    private MetadataService metadataService;
+
+    @BatchMapping(typeName = "FileShare")
+    public Map<FileShare, FileMetadata> file(List<FileShare> shares) {
+        return metadataService.getFiles(shares);
+    }
+
+    @BatchMapping(typeName = "FileMetadata")
+    public Map<FileMetadata, List<String>> tags(List<FileMetadata> files) {
+        return metadataService.getTags(files);
+    }
+}
@@ -1,6 +1,9 @@
 package com.anthonydaniel.fileflow.metadata.graphql;
 
+import com.anthonydaniel.fileflow.metadata.model.FileDeletion;
+import com.anthonydaniel.fileflow.metadata.model.FileInput;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.service.ContentBlobService;
 import com.anthonydaniel.fileflow.metadata.service.MetadataService;
 import graphql.kickstart.tools.GraphQLMutationResolver;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,18 +20,67 @@ public class MetadataMutationResolver {
     @Autowired
     private MetadataService metadataService;
 
+    @Autowired
+    private ContentBlobService contentBlobService;
+
     @MutationMapping
     public FileMetadata saveMetadata(
             @Argument String fileName,
-            @Argument Integer fileSize,
+            @Argument Long fileSize,
             @Argument String owner,
-            @Argument List<String> tags
+            @Argument List<String> tags,
+            @Argument String contentHash
     ) {
-        return metadataService.saveMetadata(fileName, fileSize, owner, tags);
+        return metadataService.saveMetadata(fileName, fileSize, owner, tags, contentHash);
+    }
+
+    @MutationMapping
+    public List<FileMetadata> saveMetadataBatch(@Argument List<FileInput> inputs) {
+        return metadataService.saveMetadataBatch(inputs);
+    }
+
+    @MutationMapping
+    public FileMetadata updateFileSize(@Argument Integer id, @Argument Long fileSize) {
+        return metadataService.updateFileSize(id, fileSize);
     }
 
     @MutationMapping
     public boolean deleteMetadata(@Argument Integer id) {
         return metadataService.deleteMetadata(id);
     }
+
+    @MutationMapping
+    public int commitMetadata(@Argument List<Integer> ids) {
+        return metadataService.commitMetadata(ids);
+    }
+
+    @MutationMapping
+    public boolean attachUploadSession(@Argument Integer fileId, @Argument String sessionId, @Argument String uploadId) {
+        return metadataService.attachUploadSession(fileId, sessionId, uploadId);
+    }
+
+    @MutationMapping
+    public FileMetadata beginDelete(@Argument Integer id) {
+        return metadataService.beginDelete(id);
+    }
+
+    @MutationMapping
+    public List<FileDeletion> beginDeleteBatch(@Argument List<Integer> fileIds, @Argument String username) {
+        return metadataService.beginDeleteBatch(fileIds, username);
+    }
+
+    @MutationMapping
+    public List<String> claimReleasedBlobs(@Argument int olderThanSeconds, @Argument Integer limit) {
+        return contentBlobService.claimReleased(olderThanSeconds, limit != null ? limit : 100);
+    }
+
+    @MutationMapping
+    public int deleteBlobs(@Argument List<String> hashes) {
+        return contentBlobService.delete(hashes);
+    }
+
+    @MutationMapping
+    public int deleteMetadataBatch(@Argument List<Integer> ids) {
+        return metadataService.deleteMetadataBatch(ids);
+    }
 }
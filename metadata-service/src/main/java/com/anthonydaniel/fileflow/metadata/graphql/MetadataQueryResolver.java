@@ -1,11 +1,17 @@
 package com.anthonydaniel.fileflow.metadata.graphql;
 
+import com.anthonydaniel.fileflow.metadata.model.FileIntent;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.TagCount;
+import com.anthonydaniel.fileflow.metadata.model.TagMatch;
+import com.anthonydaniel.fileflow.metadata.service.ContentBlobService;
 import com.anthonydaniel.fileflow.metadata.service.MetadataService;
 import graphql.kickstart.tools.GraphQLQueryResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Window;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.query.ScrollSubrange;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Controller;
 
@@ -16,14 +22,18 @@ public class MetadataQueryResolver {
     @Autowired
     private MetadataService metadataService;
 
+    @Autowired
+    private ContentBlobService contentBlobService;
+
     @QueryMapping
     public List<FileMetadata> getAllMetadata() {
         return metadataService.getAllMetadata();
     }
 
+    // null rather than an error for a missing or uncommitted file, so clients can tell it from a failure
     @QueryMapping
     public FileMetadata getMetadataById(@Argument Integer id) {
-        return metadataService.getMetadataById(id);
+        return metadataService.findMetadataById(id).orElse(null);
     }
 
     @QueryMapping
@@ -40,4 +50,59 @@ public class MetadataQueryResolver {
     public List<FileMetadata> getFilesByTag(@Argument String tag) {
         return metadataService.getByTag(tag);
     }
+
+    // Relay connections, keyset paginated so deep pages cost the same as the first one
+
+    @QueryMapping
+    public Window<FileMetadata> allMetadata(ScrollSubrange subrange) {
+        return metadataService.getAllMetadata(Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
+    @QueryMapping
+    public Window<FileMetadata> filesByOwner(@Argument String owner, ScrollSubrange subrange) {
+        return metadataService.getFilesByOwner(owner, Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
+    @QueryMapping
+    public Window<FileMetadata> metadataByFileName(@Argument String fileName, ScrollSubrange subrange) {
+        return metadataService.searchMetadata(fileName, Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
+    // ranked, access scoped file name search
+    @QueryMapping
+    public Window<FileMetadata> searchFiles(@Argument String query, @Argument String username, ScrollSubrange subrange) {
+        return metadataService.searchFiles(query, username, Pagination.position(subrange), Pagination.limit(subrange));
+    }
+
+    @QueryMapping
+    public Window<FileMetadata> filesByTags(@Argument List<String> tags, @Argument TagMatch mode,
+                                            @Argument String username, ScrollSubrange subrange) {
+        return metadataService.getFilesByTags(tags, mode, username, Pagination.position(subrange),
+                Pagination.limit(subrange));
+    }
+
+    @QueryMapping
+    public List<TagCount> tagCounts(@Argument String owner) {
+        return metadataService.getTagCounts(owner);
+    }
+
+    @QueryMapping
+    public List<FileIntent> pendingIntents(@Argument int olderThanSeconds, @Argument Integer limit) {
+        return metadataService.getPendingIntents(olderThanSeconds, limit != null ? limit : 100);
+    }
+
+    @QueryMapping
+    public List<String> existingBlobs(@Argument List<String> hashes) {
+        return contentBlobService.getExisting(hashes);
+    }
+
+    @QueryMapping
+    public List<FileMetadata> accessibleFiles(@Argument List<Integer> fileIds, @Argument String username) {
+        return metadataService.getAccessibleFiles(fileIds, username);
+    }
+
+    @QueryMapping
+    public List<Integer> existingFileIds(@Argument List<Integer> fileIds) {
+        return metadataService.getExistingFileIds(fileIds);
+    }
 }
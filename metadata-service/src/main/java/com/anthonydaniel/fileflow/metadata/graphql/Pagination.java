@@ -0,0 +1,23 @@
+package com.anthonydaniel.fileflow.metadata.graphql;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.graphql.data.query.ScrollSubrange;
+
+// first/after (or last/before) of a connection field turned into a keyset position and a bounded page size
+final class Pagination {
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    private Pagination() {
+    }
+
+    static ScrollPosition position(ScrollSubrange subrange) {
+        return subrange.position().orElse(ScrollPosition.keyset());
+    }
+
+    static Limit limit(ScrollSubrange subrange) {
+        int count = subrange.count().orElse(DEFAULT_PAGE_SIZE);
+        return Limit.of(Math.max(1, Math.min(count, MAX_PAGE_SIZE)));
+    }
+}
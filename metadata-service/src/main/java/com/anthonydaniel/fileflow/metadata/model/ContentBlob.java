@@ -0,0 +1,80 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/*
+ * A deduplicated object in MinIO, stored once under its SHA-256 and shared by every file row with that
+ * contentHash. refCount is the number of those rows. A blob that has been unreferenced for a while is
+ * marked deleting, removed from MinIO and then dropped; while deleting no new reference can be taken,
+ * so an upload never counts on an object that is about to disappear.
+ */
+@Entity
+@Table(name = "content_blobs")
+public class ContentBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private int refCount;
+
+    // when refCount last dropped to 0, null while referenced
+    private LocalDateTime releasedAt;
+
+    @Column(nullable = false)
+    private boolean deleting;
+
+    public ContentBlob() {
+    }
+
+    public ContentBlob(String hash, Long size) {
+        this.hash = hash;
+        this.size = size;
+        this.refCount = 1;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getReleasedAt() {
+        return releasedAt;
+    }
+
+    public void setReleasedAt(LocalDateTime releasedAt) {
+        this.releasedAt = releasedAt;
+    }
+
+    public boolean isDeleting() {
+        return deleting;
+    }
+
+    public void setDeleting(boolean deleting) {
+        this.deleting = deleting;
+    }
+}
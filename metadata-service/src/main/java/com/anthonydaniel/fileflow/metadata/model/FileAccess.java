@@ -0,0 +1,5 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// access decision for one file, owner is null when the file doesn't exist
+public record FileAccess(Integer fileId, String owner, boolean hasAccess) {
+}
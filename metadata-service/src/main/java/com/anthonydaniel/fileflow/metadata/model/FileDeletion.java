@@ -0,0 +1,5 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// outcome of beginDeleteBatch for one id, file is set when the delete was started, error otherwise
+public record FileDeletion(Integer fileId, FileMetadata file, String error) {
+}
@@ -0,0 +1,7 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+import java.util.List;
+
+// one row of a saveMetadataBatch call
+public record FileInput(String fileName, Long fileSize, String owner, List<String> tags) {
+}
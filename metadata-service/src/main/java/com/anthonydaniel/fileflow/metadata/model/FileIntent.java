@@ -0,0 +1,96 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/*
+ * Outbox entry for a storage operation that isn't finished yet. It is written in the same transaction
+ * that moves the file to PENDING or DELETING and removed once the operation is confirmed, so whatever
+ * is left in file_outbox is exactly the work file-management-service's reconciler has to finish or undo.
+ */
+@Entity
+@Table(name = "file_outbox", indexes = {
+        @Index(name = "idx_file_outbox_created_at", columnList = "created_at")
+})
+public class FileIntent {
+
+    // sequence like file_metadata so batch uploads can insert their intents JDBC batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_outbox_seq")
+    @SequenceGenerator(name = "file_outbox_seq", sequenceName = "file_outbox_seq", allocationSize = 50)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "file_id", nullable = false)
+    private FileMetadata file;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private FileIntentAction action;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // set for resumable and direct uploads, what the reconciler has to clean up besides the row
+    @Column(length = 64)
+    private String sessionId;
+
+    @Column(length = 1024)
+    private String uploadId;
+
+    public FileIntent() {
+    }
+
+    public FileIntent(FileMetadata file, FileIntentAction action) {
+        this.file = file;
+        this.action = action;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public FileMetadata getFile() {
+        return file;
+    }
+
+    public void setFile(FileMetadata file) {
+        this.file = file;
+    }
+
+    public FileIntentAction getAction() {
+        return action;
+    }
+
+    public void setAction(FileIntentAction action) {
+        this.action = action;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+}
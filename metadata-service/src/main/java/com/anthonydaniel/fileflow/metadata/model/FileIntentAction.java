@@ -0,0 +1,7 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// what an outbox entry still has to get done in MinIO for its file
+public enum FileIntentAction {
+    UPLOAD,
+    DELETE
+}
@@ -6,21 +6,32 @@ import java.util.HashSet;
 import java.util.Set;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
+// equality by id only, the generated one would walk the lazy collections
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
-@Table(name = "file_metadata")
+@Table(name = "file_metadata", indexes = {
+        // seek indexes for the keyset-paginated listings
+        @Index(name = "idx_file_metadata_owner_id", columnList = "owner, id"),
+        @Index(name = "idx_file_metadata_upload_date_id", columnList = "upload_date, id")
+})
 public class FileMetadata {
 
+    // sequence instead of IDENTITY so inserts can be JDBC batched, ids are handed out 50 at a time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_metadata_seq")
+    @SequenceGenerator(name = "file_metadata_seq", sequenceName = "file_metadata_seq", allocationSize = 50)
     private Integer id;
 
     @Column(nullable = false)
     private String fileName;
 
     @Column(nullable = false)
-    private Integer fileSize;
+    private Long fileSize;
 
     @Column(nullable = false)
     private LocalDateTime uploadDate = LocalDateTime.now();
@@ -28,13 +39,27 @@ public class FileMetadata {
     @Column(nullable = true)
     private String owner;
 
+    // SHA-256 of the content when it is stored as a shared blob (blobs/<hash>), null for owner/id_name objects
+    @Column(length = 64)
+    private String contentHash;
+
+    // nullable only so ddl-auto can add the column to existing tables, PostgresSchemaInitializer backfills it
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private FileStatus status = FileStatus.COMMITTED;
+
+    @ToString.Exclude
     @OneToMany(mappedBy = "file", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<FileShare> shares = new HashSet<>();
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    // lazy, the GraphQL tags field is batch loaded for all files of a response in one query
+    @ToString.Exclude
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(
             name = "file_tags",
-            joinColumns = @JoinColumn(name = "file_id")
+            joinColumns = @JoinColumn(name = "file_id"),
+            // tag -> files lookups for the tag queries, file_id in the key makes them index-only
+            indexes = @Index(name = "idx_file_tags_tag_file_id", columnList = "tag, file_id")
     )
     @Column(name = "tag")
     private Set<String> tags = new HashSet<>();
@@ -63,11 +88,11 @@ public class FileMetadata {
         this.fileName = fileName;
     }
 
-    public Integer getFileSize() {
+    public Long getFileSize() {
         return fileSize;
     }
 
-    public void setFileSize(Integer fileSize) {
+    public void setFileSize(Long fileSize) {
         this.fileSize = fileSize;
     }
 
@@ -87,6 +112,22 @@ public class FileMetadata {
         this.owner = owner;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public FileStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(FileStatus status) {
+        this.status = status;
+    }
+
     public Set<String> getTags() {return tags;}
 
     public void setTags(Set<String> tags) {this.tags = tags;}
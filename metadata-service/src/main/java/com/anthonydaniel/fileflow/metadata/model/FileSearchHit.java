@@ -0,0 +1,8 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// a searchFiles match, score is the pg_trgm similarity of the file name to the query
+public interface FileSearchHit {
+    Integer getId();
+
+    Float getScore();
+}
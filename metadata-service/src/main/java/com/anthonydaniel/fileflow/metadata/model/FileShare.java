@@ -7,6 +7,10 @@ import java.time.LocalDateTime;
 @Table(name = "file_shares",
         uniqueConstraints = {
                 @UniqueConstraint(columnNames = {"file_id", "shared_with_username"})
+        },
+        indexes = {
+                @Index(name = "idx_file_shares_with_id", columnList = "shared_with_username, share_id"),
+                @Index(name = "idx_file_shares_by_id", columnList = "shared_by_username, share_id")
         })
 public class FileShare {
     @Id
@@ -0,0 +1,11 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+/*
+ * Where a file is between metadata-service and MinIO. Rows start PENDING until file-management-service
+ * has stored the object, and go DELETING before the object is removed. Listings only show COMMITTED files.
+ */
+public enum FileStatus {
+    PENDING,
+    COMMITTED,
+    DELETING
+}
@@ -0,0 +1,5 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// one file_tags row, used to load the tags of many files in one query
+public record FileTag(Integer fileId, String tag) {
+}
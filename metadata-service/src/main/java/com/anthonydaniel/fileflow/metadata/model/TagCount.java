@@ -0,0 +1,5 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// how many of an owner's files carry a tag, for tag facets
+public record TagCount(String tag, long count) {
+}
@@ -0,0 +1,7 @@
+package com.anthonydaniel.fileflow.metadata.model;
+
+// how filesByTags combines its tags: files with every tag, or with at least one
+public enum TagMatch {
+    ALL,
+    ANY
+}
@@ -0,0 +1,55 @@
+package com.anthonydaniel.fileflow.metadata.repository;
+
+import com.anthonydaniel.fileflow.metadata.model.ContentBlob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    // 0 when there is no such blob or it is being deleted
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount + 1, b.releasedAt = NULL " +
+            "WHERE b.hash = :hash AND b.deleting = false")
+    int acquire(@Param("hash") String hash);
+
+    // 0 when the blob exists; a concurrent first insert of the same hash is waited for instead of failing
+    @Modifying
+    @Query(value = "INSERT INTO content_blobs (hash, size, ref_count, deleting) VALUES (:hash, :size, 1, false) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash, @Param("size") Long size);
+
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount - :count, " +
+            "b.releasedAt = CASE WHEN b.refCount - :count <= 0 THEN :now ELSE NULL END " +
+            "WHERE b.hash = :hash")
+    int release(@Param("hash") String hash, @Param("count") int count, @Param("now") LocalDateTime now);
+
+    // already claimed blobs come back too, their removal may have been interrupted
+    @Query("SELECT b.hash FROM ContentBlob b " +
+            "WHERE b.deleting = true OR (b.refCount <= 0 AND b.releasedAt < :before) ORDER BY b.hash")
+    List<String> findCollectable(@Param("before") LocalDateTime before, Limit limit);
+
+    // refCount is checked again, a reference taken since findCollectable keeps the blob
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.deleting = true WHERE b.hash IN :hashes AND b.refCount <= 0")
+    int markDeleting(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT b.hash FROM ContentBlob b WHERE b.hash IN :hashes AND b.deleting = true")
+    List<String> findDeleting(@Param("hashes") Collection<String> hashes);
+
+    @Modifying
+    @Query("DELETE FROM ContentBlob b WHERE b.hash IN :hashes AND b.deleting = true")
+    int deleteDeleting(@Param("hashes") Collection<String> hashes);
+
+    @Query("SELECT b.hash FROM ContentBlob b WHERE b.hash IN :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+}
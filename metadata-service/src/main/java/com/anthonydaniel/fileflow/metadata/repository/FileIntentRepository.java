@@ -0,0 +1,40 @@
+package com.anthonydaniel.fileflow.metadata.repository;
+
+import com.anthonydaniel.fileflow.metadata.model.FileIntent;
+import com.anthonydaniel.fileflow.metadata.model.FileIntentAction;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FileIntentRepository extends JpaRepository<FileIntent, Integer> {
+
+    // oldest first, the file is fetched with it since the reconciler needs its object name
+    @Query("SELECT i FROM FileIntent i JOIN FETCH i.file WHERE i.createdAt < :before ORDER BY i.createdAt, i.id")
+    List<FileIntent> findCreatedBefore(@Param("before") LocalDateTime before, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM FileIntent i WHERE i.file.id IN :fileIds AND i.action = :action")
+    int deleteByFileIds(@Param("fileIds") Collection<Integer> fileIds, @Param("action") FileIntentAction action);
+
+    @Modifying
+    @Query("DELETE FROM FileIntent i WHERE i.file.id IN :fileIds")
+    int deleteByFileIds(@Param("fileIds") Collection<Integer> fileIds);
+
+    @Modifying
+    @Query("UPDATE FileIntent i SET i.sessionId = :sessionId, i.uploadId = :uploadId "
+            + "WHERE i.file.id = :fileId AND i.action = :action")
+    int attachSession(@Param("fileId") Integer fileId, @Param("action") FileIntentAction action,
+                      @Param("sessionId") String sessionId, @Param("uploadId") String uploadId);
+
+    @Modifying
+    @Query("DELETE FROM FileIntent i WHERE i.file.id = :fileId")
+    void deleteByFileId(@Param("fileId") Integer fileId);
+}
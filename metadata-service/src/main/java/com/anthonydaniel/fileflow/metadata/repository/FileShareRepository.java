@@ -1,13 +1,20 @@
 package com.anthonydaniel.fileflow.metadata.repository;
 
+import com.anthonydaniel.fileflow.metadata.model.FileAccess;
 import com.anthonydaniel.fileflow.metadata.model.FileShare;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,9 +29,25 @@ public interface FileShareRepository extends JpaRepository<FileShare, Long> {
     List<FileShare> findBySharedWithUsernameAndSharedDateAfter(String username, LocalDateTime date);
     void deleteByFileId(Integer fileId);
 
+    @Modifying
+    @Query("DELETE FROM FileShare s WHERE s.file.id IN :fileIds")
+    int deleteByFileIds(@Param("fileIds") Collection<Integer> fileIds);
+
     @Query("SELECT fs FROM FileShare fs WHERE fs.sharedWithUsername = :username")
     List<FileShare> findFileSharesBySharedWithUsername(@Param("username") String username);
 
     @Query("SELECT fs FROM FileShare fs WHERE fs.sharedByUsername = :username")
     List<FileShare> findFileSharesBySharedByUsername(@Param("username") String username);
+
+    // keyset pages of the share listings, sorted by shareId
+    Window<FileShare> findBySharedWithUsername(String username, ScrollPosition position, Limit limit, Sort sort);
+    Window<FileShare> findBySharedByUsername(String username, ScrollPosition position, Limit limit, Sort sort);
+
+    // owner + share lookup for many files in one statement, (file_id, shared_with_username) is unique so
+    // the left join gives at most one row per file. Uploads and deletes in flight count as not found
+    @Query("SELECT new com.anthonydaniel.fileflow.metadata.model.FileAccess(f.id, f.owner, " +
+            "CASE WHEN f.owner = :username OR s.shareId IS NOT NULL THEN true ELSE false END) " +
+            "FROM FileMetadata f LEFT JOIN f.shares s ON s.sharedWithUsername = :username " +
+            "WHERE f.id IN :fileIds AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED")
+    List<FileAccess> findAccess(@Param("fileIds") Collection<Integer> fileIds, @Param("username") String username);
 }
\ No newline at end of file
@@ -1,18 +1,143 @@
 package com.anthonydaniel.fileflow.metadata.repository;
 
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileSearchHit;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
+import com.anthonydaniel.fileflow.metadata.model.FileTag;
+import com.anthonydaniel.fileflow.metadata.model.TagCount;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MetadataRepository extends JpaRepository<FileMetadata, Long> {
-    List<FileMetadata> findByFileNameContaining(String fileName);
-    List<FileMetadata> findByOwner(String owner);
+    // listings take a status, callers pass COMMITTED so uploads and deletes in flight aren't shown
+    List<FileMetadata> findByStatus(FileStatus status);
+    List<FileMetadata> findByFileNameContainingAndStatus(String fileName, FileStatus status);
+    List<FileMetadata> findByOwnerAndStatus(String owner, FileStatus status);
+    Optional<FileMetadata> findByIdAndStatus(Integer id, FileStatus status);
 
-    @Query("SELECT DISTINCT f FROM FileMetadata f JOIN f.tags t WHERE t = :tag")
+    // keyset (seek) pages, the Sort passed in must end with id so positions are unique
+    Window<FileMetadata> findByStatus(FileStatus status, ScrollPosition position, Limit limit, Sort sort);
+    Window<FileMetadata> findByOwnerAndStatus(String owner, FileStatus status, ScrollPosition position, Limit limit,
+                                              Sort sort);
+    Window<FileMetadata> findByFileNameContainingAndStatus(String fileName, FileStatus status,
+                                                           ScrollPosition position, Limit limit, Sort sort);
+
+    // batch loads for the GraphQL FileShare.file and FileMetadata.tags fields
+    List<FileMetadata> findByIdIn(Collection<Integer> ids);
+
+    @Query("SELECT new com.anthonydaniel.fileflow.metadata.model.FileTag(f.id, t) FROM FileMetadata f JOIN f.tags t " +
+            "WHERE f.id IN :ids")
+    List<FileTag> findTagsByFileIds(@Param("ids") Collection<Integer> ids);
+
+    /*
+     * searchFiles, PostgreSQL only. Matches are files the user owns or has been shared, ranked by trigram
+     * similarity then id. The keyset condition (score, id) < (afterScore, afterId) continues after the last
+     * hit of the previous page, the first page passes (2, Integer.MAX_VALUE) which is above every hit.
+     */
+    @Query(value = """
+            SELECT f.id AS id, similarity(lower(f.file_name), :query) AS score
+            FROM file_metadata f
+            WHERE (lower(f.file_name) LIKE :contains OR lower(f.file_name) % :query)
+              AND f.status = 'COMMITTED'
+              AND (f.owner = :username OR EXISTS (
+                    SELECT 1 FROM file_shares s WHERE s.file_id = f.id AND s.shared_with_username = :username))
+              AND (similarity(lower(f.file_name), :query), f.id) < (CAST(:afterScore AS real), :afterId)
+            ORDER BY score DESC, f.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FileSearchHit> searchByTrigram(@Param("query") String query, @Param("contains") String contains,
+                                        @Param("username") String username, @Param("afterScore") float afterScore,
+                                        @Param("afterId") int afterId, @Param("limit") int limit);
+
+    // searchFiles without pg_trgm: plain substring match, newest first, keyset by id
+    @Query("SELECT f FROM FileMetadata f WHERE LOWER(f.fileName) LIKE :pattern ESCAPE '\\' " +
+            "AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED " +
+            "AND (f.owner = :username OR EXISTS (SELECT 1 FROM FileShare s WHERE s.file = f " +
+            "AND s.sharedWithUsername = :username)) " +
+            "AND f.id < :afterId ORDER BY f.id DESC")
+    List<FileMetadata> searchByName(@Param("pattern") String pattern, @Param("username") String username,
+                                    @Param("afterId") int afterId, Limit limit);
+
+    // queries under 3 characters have no trigrams to look up, they match name prefixes instead
+    @Query(value = """
+            SELECT f.id AS id, similarity(lower(f.file_name), :query) AS score
+            FROM file_metadata f
+            WHERE lower(f.file_name) LIKE :prefix
+              AND f.status = 'COMMITTED'
+              AND (f.owner = :username OR EXISTS (
+                    SELECT 1 FROM file_shares s WHERE s.file_id = f.id AND s.shared_with_username = :username))
+              AND (similarity(lower(f.file_name), :query), f.id) < (CAST(:afterScore AS real), :afterId)
+            ORDER BY score DESC, f.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<FileSearchHit> searchByPrefix(@Param("query") String query, @Param("prefix") String prefix,
+                                       @Param("username") String username, @Param("afterScore") float afterScore,
+                                       @Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Query("SELECT f FROM FileMetadata f WHERE f.id IN (SELECT ft.id FROM FileMetadata ft JOIN ft.tags t WHERE t = :tag) " +
+            "AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED")
     List<FileMetadata> findByTag(@Param("tag") String tag);
+
+    // committed files among ids that username owns or has been shared
+    @Query("SELECT f FROM FileMetadata f " +
+            "WHERE f.id IN :ids " +
+            "AND (f.owner = :username OR EXISTS (SELECT s.shareId FROM FileShare s " +
+            "                                    WHERE s.file = f AND s.sharedWithUsername = :username)) " +
+            "AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED")
+    List<FileMetadata> findAccessible(@Param("ids") Collection<Integer> ids, @Param("username") String username);
+
+    /*
+     * Files carrying at least `required` of the given tags (tags.size() for ALL, 1 for ANY) that username owns
+     * or has been shared, newest id first, continuing below afterId. (file_id, tag) is unique so COUNT(t)
+     * counts distinct matching tags.
+     */
+    @Query("SELECT f FROM FileMetadata f " +
+            "WHERE f.id IN (SELECT ft.id FROM FileMetadata ft JOIN ft.tags t WHERE t IN :tags " +
+            "               GROUP BY ft.id HAVING COUNT(t) >= :required) " +
+            "AND (f.owner = :username OR EXISTS (SELECT s.shareId FROM FileShare s " +
+            "                                    WHERE s.file = f AND s.sharedWithUsername = :username)) " +
+            "AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED " +
+            "AND f.id < :afterId " +
+            "ORDER BY f.id DESC")
+    List<FileMetadata> findByTags(@Param("tags") Collection<String> tags, @Param("required") long required,
+                                  @Param("username") String username, @Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT new com.anthonydaniel.fileflow.metadata.model.TagCount(t, COUNT(f)) " +
+            "FROM FileMetadata f JOIN f.tags t WHERE f.owner = :owner AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED " +
+            "GROUP BY t ORDER BY COUNT(f) DESC, t")
+    List<TagCount> countTagsByOwner(@Param("owner") String owner);
+
+    // only moves PENDING rows, so a commit arriving after the reconciler rolled the upload back is a no-op
+    @Modifying
+    @Query("UPDATE FileMetadata f SET f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.COMMITTED " +
+            "WHERE f.id IN :ids AND f.status = com.anthonydaniel.fileflow.metadata.model.FileStatus.PENDING")
+    int commitPending(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT f.id FROM FileMetadata f WHERE f.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    // one entry per row, so blobs shared by several of the rows are released that many times
+    @Query("SELECT f.contentHash FROM FileMetadata f WHERE f.id IN :ids AND f.contentHash IS NOT NULL")
+    List<String> findContentHashes(@Param("ids") Collection<Integer> ids);
+
+    // bulk deletes skip the element collection cascade, so the tags go first
+    @Modifying
+    @Query(value = "DELETE FROM file_tags WHERE file_id IN :ids", nativeQuery = true)
+    int deleteTagsByFileIds(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query("DELETE FROM FileMetadata f WHERE f.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,75 @@
+package com.anthonydaniel.fileflow.metadata.service;
+
+import com.anthonydaniel.fileflow.metadata.repository.ContentBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// reference counts of the deduplicated blobs, see ContentBlob
+@Service
+public class ContentBlobService {
+
+    private static final Pattern SHA_256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private ContentBlobRepository repository;
+
+    /*
+     * One more file row points at hash, runs inside the transaction that inserts the row. Both conflicts are
+     * settled here rather than retried by the caller, whose retry would insert a second row: a concurrent
+     * first upload of the same content makes the insert wait and the reference is taken on its blob, and a
+     * blob that is being deleted can't be shared, which is the false result.
+     */
+    @Transactional
+    public boolean acquire(String hash, Long size) {
+        if (!SHA_256_HEX.matcher(hash).matches()) {
+            throw new RuntimeException("Invalid content hash");
+        }
+        if (repository.acquire(hash) == 1 || repository.insertIfAbsent(hash, size) == 1) {
+            return true;
+        }
+        return repository.acquire(hash) == 1;
+    }
+
+    // the rows with these hashes (one entry per row) are being deleted
+    @Transactional
+    public void release(Collection<String> hashes) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Long> counts = hashes.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        counts.forEach((hash, count) -> repository.release(hash, count.intValue(), now));
+    }
+
+    // marks blobs unreferenced for longer than olderThanSeconds as deleting and returns them for removal
+    @Transactional
+    public List<String> claimReleased(int olderThanSeconds, int limit) {
+        List<String> candidates = repository.findCollectable(LocalDateTime.now().minusSeconds(olderThanSeconds),
+                Limit.of(Math.min(Math.max(limit, 1), 1000)));
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        repository.markDeleting(candidates);
+        return repository.findDeleting(candidates);
+    }
+
+    // the objects are gone from MinIO, drop their entries
+    @Transactional
+    public int delete(List<String> hashes) {
+        return hashes.isEmpty() ? 0 : repository.deleteDeleting(hashes);
+    }
+
+    public List<String> getExisting(List<String> hashes) {
+        if (hashes.size() > 1000) {
+            throw new RuntimeException("Too many hashes, at most 1000 per request");
+        }
+        return hashes.isEmpty() ? List.of() : repository.findExistingHashes(hashes);
+    }
+}
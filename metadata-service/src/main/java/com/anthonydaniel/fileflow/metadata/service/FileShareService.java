@@ -1,20 +1,27 @@
 package com.anthonydaniel.fileflow.metadata.service;
 
+import com.anthonydaniel.fileflow.metadata.model.FileAccess;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
 import com.anthonydaniel.fileflow.metadata.model.FileShare;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
 import com.anthonydaniel.fileflow.metadata.repository.FileShareRepository;
 import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class FileShareService {
 
+    private static final int MAX_ACCESS_BATCH = 1000;
+
     @Autowired
     private FileShareRepository fileShareRepository;
 
@@ -24,8 +31,8 @@ public class FileShareService {
     @Transactional
     public boolean shareFile(Integer fileId, String sharedWithUsername, String sharedByUsername) {
         try {
-            // check file exists
-            Optional<FileMetadata> fileMetadata = metadataRepository.findById(Long.valueOf(fileId));
+            // check file exists, uploads and deletes in flight can't be shared
+            Optional<FileMetadata> fileMetadata = metadataRepository.findByIdAndStatus(fileId, FileStatus.COMMITTED);
             if (fileMetadata.isEmpty()) {
                 throw new RuntimeException("File not found");
             }
@@ -91,23 +98,10 @@ public class FileShareService {
 
     public boolean hasFileAccess(Integer fileId, String username) {
         try {
-            if (fileId == null || username == null || username.trim().isEmpty()) {
+            if (fileId == null) {
                 return false;
             }
-
-            // check if file exists
-            Optional<FileMetadata> fileMetadata = metadataRepository.findById(Long.valueOf(fileId));
-            if (fileMetadata.isEmpty()) {
-                return false;
-            }
-
-            // if user is owner, they have access
-            if (username.equals(fileMetadata.get().getOwner())) {
-                return true;
-            }
-
-            // check if file is shared with user
-            return fileShareRepository.findByFileIdAndSharedWithUsername(fileId, username).isPresent();
+            return hasFileAccessBatch(List.of(fileId), username).get(0).hasAccess();
         } catch (Exception e) {
             // return false instead of throwing error
             //logger.error("Error checking file access: {}", e.getMessage(), e);
@@ -115,10 +109,39 @@ public class FileShareService {
         }
     }
 
+    // one entry per requested id in request order, unknown files come back without access
+    public List<FileAccess> hasFileAccessBatch(List<Integer> fileIds, String username) {
+        if (fileIds.size() > MAX_ACCESS_BATCH) {
+            throw new RuntimeException("Too many fileIds, at most " + MAX_ACCESS_BATCH + " per request");
+        }
+        Map<Integer, FileAccess> found = new HashMap<>();
+        if (username != null && !username.trim().isEmpty() && !fileIds.isEmpty()) {
+            for (FileAccess access : fileShareRepository.findAccess(new HashSet<>(fileIds), username)) {
+                found.put(access.fileId(), access);
+            }
+        }
+        List<FileAccess> result = new ArrayList<>(fileIds.size());
+        for (Integer fileId : fileIds) {
+            FileAccess access = found.get(fileId);
+            result.add(access != null ? access : new FileAccess(fileId, null, false));
+        }
+        return result;
+    }
+
     public List<FileShare> getFilesSharedWithUser(String username) {
         return fileShareRepository.findFileSharesBySharedWithUsername(username);
     }
 
+    public Window<FileShare> getFilesSharedWithUser(String username, ScrollPosition position, Limit limit) {
+        return fileShareRepository.findBySharedWithUsername(username, position, limit,
+                Sort.by(Sort.Direction.DESC, "shareId"));
+    }
+
+    public Window<FileShare> getFilesSharedByUser(String username, ScrollPosition position, Limit limit) {
+        return fileShareRepository.findBySharedByUsername(username, position, limit,
+                Sort.by(Sort.Direction.DESC, "shareId"));
+    }
+
     public List<FileShare> getSharesForFile(Integer fileId) {
         return fileShareRepository.findByFileId(fileId);
     }
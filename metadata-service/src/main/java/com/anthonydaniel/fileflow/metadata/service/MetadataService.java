@@ -1,19 +1,38 @@
 package com.anthonydaniel.fileflow.metadata.service;
 
+import com.anthonydaniel.fileflow.metadata.model.FileAccess;
+import com.anthonydaniel.fileflow.metadata.model.FileDeletion;
+import com.anthonydaniel.fileflow.metadata.model.FileInput;
+import com.anthonydaniel.fileflow.metadata.model.FileIntent;
+import com.anthonydaniel.fileflow.metadata.model.FileIntentAction;
 import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileSearchHit;
+import com.anthonydaniel.fileflow.metadata.model.FileShare;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
+import com.anthonydaniel.fileflow.metadata.model.TagCount;
+import com.anthonydaniel.fileflow.metadata.model.TagMatch;
+import com.anthonydaniel.fileflow.metadata.repository.FileIntentRepository;
 import com.anthonydaniel.fileflow.metadata.repository.FileShareRepository;
 import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class MetadataService {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataService.class);
 
     @Autowired
     private MetadataRepository repository;
@@ -21,55 +40,202 @@ public class MetadataService {
     @Autowired
     private FileShareRepository fileShareRepository;
 
+    @Autowired
+    private FileIntentRepository fileIntentRepository;
+
+    @Autowired
+    private ContentBlobService contentBlobService;
+
+    // ranked pg_trgm search, substring matching until the schema initializer has confirmed the extension
+    private volatile boolean trigramSearch;
+
     public List<FileMetadata> getAllMetadata() {
-        return repository.findAll();
+        return repository.findByStatus(FileStatus.COMMITTED);
     }
 
+    // newest uploads first
+    public Window<FileMetadata> getAllMetadata(ScrollPosition position, Limit limit) {
+        return repository.findByStatus(FileStatus.COMMITTED, position, limit, Sort.by(Sort.Direction.DESC, "uploadDate", "id"));
+    }
+
+    // only committed files, an upload or delete in flight is not found
     public FileMetadata getMetadataById(Integer id) {
+        return findMetadataById(id).orElseThrow(() -> new RuntimeException("Metadata not found"));
+    }
+
+    public Optional<FileMetadata> findMetadataById(Integer id) {
+        return repository.findByIdAndStatus(id, FileStatus.COMMITTED);
+    }
+
+    // whatever the status, for the upload and delete steps themselves
+    private FileMetadata getAnyMetadataById(Integer id) {
         return repository.findById(Long.valueOf(id)).orElseThrow(() -> new RuntimeException("Metadata not found"));
     }
 
     public List<FileMetadata> searchMetadata(String fileName) {
-        return repository.findByFileNameContaining(fileName);
+        return repository.findByFileNameContainingAndStatus(fileName, FileStatus.COMMITTED);
+    }
+
+    // file -> tags for a whole GraphQL response, one query however many files there are
+    public Map<FileMetadata, List<String>> getTags(List<FileMetadata> files) {
+        Map<Integer, List<String>> tagsById = new HashMap<>();
+        repository.findTagsByFileIds(files.stream().map(FileMetadata::getId).collect(Collectors.toSet()))
+                .forEach(tag -> tagsById.computeIfAbsent(tag.fileId(), id -> new ArrayList<>()).add(tag.tag()));
+
+        Map<FileMetadata, List<String>> result = new HashMap<>();
+        for (FileMetadata file : files) {
+            result.put(file, tagsById.getOrDefault(file.getId(), List.of()));
+        }
+        return result;
+    }
+
+    // share -> file for a whole GraphQL response, the ids come off the lazy proxies without loading them
+    public Map<FileShare, FileMetadata> getFiles(List<FileShare> shares) {
+        Map<Integer, FileMetadata> filesById = repository.findByIdIn(shares.stream()
+                        .map(share -> share.getFile().getId())
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(FileMetadata::getId, Function.identity()));
+
+        Map<FileShare, FileMetadata> result = new HashMap<>();
+        for (FileShare share : shares) {
+            result.put(share, filesById.get(share.getFile().getId()));
+        }
+        return result;
+    }
+
+    public Window<FileMetadata> searchMetadata(String fileName, ScrollPosition position, Limit limit) {
+        return repository.findByFileNameContainingAndStatus(fileName, FileStatus.COMMITTED, position, limit,
+                Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    // ranked name search over the files username can access, see MetadataRepository.searchByTrigram
+    public Window<FileMetadata> searchFiles(String query, String username, ScrollPosition position, Limit limit) {
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || username == null || username.isBlank()) {
+            return Window.from(List.of(), ScrollPosition::offset, false);
+        }
+
+        float afterScore = 2f;
+        int afterId = Integer.MAX_VALUE;
+        if (position instanceof KeysetScrollPosition keyset && !keyset.getKeys().isEmpty()) {
+            afterScore = ((Number) keyset.getKeys().get("score")).floatValue();
+            afterId = ((Number) keyset.getKeys().get("id")).intValue();
+        }
+
+        String escaped = normalized.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        if (!trigramSearch) {
+            return searchByName("%" + escaped + "%", username, afterId, limit);
+        }
+
+        // one extra row tells whether there is a next page
+        int fetch = limit.max() + 1;
+        List<FileSearchHit> hits = normalized.length() < 3
+                ? repository.searchByPrefix(normalized, escaped + "%", username, afterScore, afterId, fetch)
+                : repository.searchByTrigram(normalized, "%" + escaped + "%", username, afterScore, afterId, fetch);
+
+        boolean hasNext = hits.size() > limit.max();
+        List<FileSearchHit> page = hasNext ? hits.subList(0, limit.max()) : hits;
+        Map<Integer, FileMetadata> filesById = repository.findByIdIn(page.stream().map(FileSearchHit::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(FileMetadata::getId, Function.identity()));
+
+        List<FileMetadata> files = page.stream().map(hit -> filesById.get(hit.getId())).toList();
+        return Window.from(files, index -> ScrollPosition.forward(
+                Map.of("score", page.get(index).getScore(), "id", page.get(index).getId())), hasNext);
+    }
+
+    // no similarity ranking, every hit scores 0 so cursors keep the same shape
+    private Window<FileMetadata> searchByName(String pattern, String username, int afterId, Limit limit) {
+        List<FileMetadata> files = repository.searchByName(pattern, username, afterId, Limit.of(limit.max() + 1));
+        boolean hasNext = files.size() > limit.max();
+        List<FileMetadata> page = hasNext ? files.subList(0, limit.max()) : files;
+        return Window.from(page, index -> ScrollPosition.forward(
+                Map.of("score", 0f, "id", page.get(index).getId())), hasNext);
     }
 
-    public FileMetadata saveMetadata(String fileName, Integer fileSize, String owner, List<String> tags) {
-        System.out.println("Service received: fileName=" + fileName +
-                ", fileSize=" + fileSize +
-                ", owner=" + owner +
-                ", tags=" + tags); // debug
+    // set on startup once it is known whether pg_trgm is installed, see PostgresSchemaInitializer
+    public void setTrigramSearch(boolean trigramSearch) {
+        this.trigramSearch = trigramSearch;
+    }
+
+    public FileMetadata saveMetadata(String fileName, Long fileSize, String owner, List<String> tags) {
+        return saveMetadata(fileName, fileSize, owner, tags, null);
+    }
+
+    /*
+     * The row starts PENDING with an UPLOAD intent, commitMetadata publishes it once the object is stored.
+     * With a contentHash the file is stored as a shared blob and takes a reference on it in the same transaction,
+     * unless that blob is being deleted: then the row comes back without contentHash.
+     */
+    @Transactional
+    public FileMetadata saveMetadata(String fileName, Long fileSize, String owner, List<String> tags,
+                                     String contentHash) {
+        logger.debug("Saving metadata: fileName={}, fileSize={}, owner={}, tags={}", fileName, fileSize, owner, tags);
 
         FileMetadata metadata = new FileMetadata();
         metadata.setFileName(fileName);
         metadata.setFileSize(fileSize);
         metadata.setOwner(owner);
         metadata.setUploadDate(LocalDateTime.now());
-        if (tags != null && !tags.isEmpty()) {
-            Set<String> tagSet = new HashSet<>(tags);
-            metadata.setTags(tagSet);
-            System.out.println("Adding tags to metadata: " + tagSet);
-        } else {
-            metadata.setTags(new HashSet<>()); // empty set if no tags
-            System.out.println("No tags provided, initializing empty set");
+        metadata.setStatus(FileStatus.PENDING);
+        if (contentHash != null) {
+            if (contentBlobService.acquire(contentHash, fileSize)) {
+                metadata.setContentHash(contentHash);
+            } else {
+                // the blob is being garbage collected, this file is stored under its own object name instead
+                logger.info("Blob {} is being deleted, saving {} without deduplication", contentHash, fileName);
+            }
         }
+        metadata.setTags(tags != null ? new HashSet<>(tags) : new HashSet<>());
 
-        try {
-            FileMetadata savedMetadata = repository.save(metadata);
-            System.out.println("Saved metadata with ID: " + savedMetadata.getId());
-            System.out.println("Saved metadata tags: " + savedMetadata.getTags());
-            return savedMetadata;
-        } catch (Exception e) {
-            System.err.println("Error saving metadata: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        // a failure has to reach the caller and roll back the blob reference with the row, never return null
+        FileMetadata savedMetadata = repository.save(metadata);
+        fileIntentRepository.save(new FileIntent(savedMetadata, FileIntentAction.UPLOAD));
+        logger.debug("Saved metadata with ID: {}", savedMetadata.getId());
+        return savedMetadata;
+    }
+
+    // all rows (PENDING) and their UPLOAD intents are created in one transaction, the result is in input order
+    @Transactional
+    public List<FileMetadata> saveMetadataBatch(List<FileInput> inputs) {
+        List<FileMetadata> batch = new ArrayList<>(inputs.size());
+        for (FileInput input : inputs) {
+            FileMetadata metadata = new FileMetadata();
+            metadata.setFileName(input.fileName());
+            metadata.setFileSize(input.fileSize());
+            metadata.setOwner(input.owner());
+            metadata.setUploadDate(LocalDateTime.now());
+            metadata.setTags(input.tags() != null ? new HashSet<>(input.tags()) : new HashSet<>());
+            metadata.setStatus(FileStatus.PENDING);
+            batch.add(metadata);
         }
+        List<FileMetadata> saved = repository.saveAll(batch);
+        fileIntentRepository.saveAll(saved.stream()
+                .map(metadata -> new FileIntent(metadata, FileIntentAction.UPLOAD))
+                .toList());
+        return saved;
+    }
+
+    // streamed uploads create the row before the size is known
+    @Transactional
+    public FileMetadata updateFileSize(Integer id, Long fileSize) {
+        FileMetadata metadata = getAnyMetadataById(id);
+        metadata.setFileSize(fileSize);
+        return repository.save(metadata);
     }
 
     @Transactional
     public boolean deleteMetadata(Integer id) {
-        if (repository.existsById(Long.valueOf(id))) {
+        Optional<FileMetadata> metadata = repository.findById(Long.valueOf(id));
+        if (metadata.isPresent()) {
+            if (metadata.get().getContentHash() != null) {
+                contentBlobService.release(List.of(metadata.get().getContentHash()));
+            }
             //delete any shares of this file
             fileShareRepository.deleteByFileId(id);
+            // and whatever was still outstanding for it
+            fileIntentRepository.deleteByFileId(id);
             // delete the file metadata
             repository.deleteById(Long.valueOf(id));
             return true;
@@ -77,12 +243,161 @@ public class MetadataService {
         return false;
     }
 
+    // the objects are stored, publish the rows and clear their UPLOAD intents, returns how many were committed
+    @Transactional
+    public int commitMetadata(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        int committed = repository.commitPending(ids);
+        fileIntentRepository.deleteByFileIds(ids, FileIntentAction.UPLOAD);
+        return committed;
+    }
+
+    // records the upload session on the file's UPLOAD intent, false when the upload isn't pending anymore
+    @Transactional
+    public boolean attachUploadSession(Integer fileId, String sessionId, String uploadId) {
+        return fileIntentRepository.attachSession(fileId, FileIntentAction.UPLOAD, sessionId, uploadId) > 0;
+    }
+
+    // hides the file and records a DELETE intent before the object is removed, deleteMetadata finishes it
+    @Transactional
+    public FileMetadata beginDelete(Integer id) {
+        FileMetadata metadata = getAnyMetadataById(id);
+        metadata.setStatus(FileStatus.DELETING);
+        fileIntentRepository.deleteByFileId(id);
+        fileIntentRepository.save(new FileIntent(metadata, FileIntentAction.DELETE));
+        return metadata;
+    }
+
+    /*
+     * beginDelete for many files in one transaction. A file is only marked when username may delete it
+     * (owner or shared, like the single delete), the result is in request order.
+     */
+    @Transactional
+    public List<FileDeletion> beginDeleteBatch(List<Integer> ids, String username) {
+        checkBatchSize(ids);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, FileAccess> access = fileShareRepository.findAccess(ids, username).stream()
+                .collect(Collectors.toMap(FileAccess::fileId, Function.identity()));
+        List<Integer> allowed = access.values().stream()
+                .filter(FileAccess::hasAccess)
+                .map(FileAccess::fileId)
+                .toList();
+
+        Map<Integer, FileMetadata> files = new HashMap<>();
+        if (!allowed.isEmpty()) {
+            repository.findByIdIn(allowed).forEach(file -> {
+                file.setStatus(FileStatus.DELETING);
+                files.put(file.getId(), file);
+            });
+            fileIntentRepository.deleteByFileIds(allowed);
+            fileIntentRepository.saveAll(files.values().stream()
+                    .map(file -> new FileIntent(file, FileIntentAction.DELETE))
+                    .toList());
+        }
+
+        List<FileDeletion> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            FileAccess fileAccess = access.get(id);
+            // a row can go between the access check and the load when another delete gets there first
+            if (fileAccess == null || (fileAccess.hasAccess() && files.get(id) == null)) {
+                result.add(new FileDeletion(id, null, "File not found"));
+            } else if (!fileAccess.hasAccess()) {
+                result.add(new FileDeletion(id, null, "Access denied"));
+            } else {
+                result.add(new FileDeletion(id, files.get(id), null));
+            }
+        }
+        return result;
+    }
+
+    // removes the rows with their tags, shares and intents in one transaction, returns how many rows went
+    @Transactional
+    public int deleteMetadataBatch(List<Integer> ids) {
+        checkBatchSize(ids);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        contentBlobService.release(repository.findContentHashes(ids));
+        fileShareRepository.deleteByFileIds(ids);
+        fileIntentRepository.deleteByFileIds(ids);
+        repository.deleteTagsByFileIds(ids);
+        return repository.deleteByIds(ids);
+    }
+
+    private void checkBatchSize(List<Integer> ids) {
+        if (ids.size() > 1000) {
+            throw new RuntimeException("Too many fileIds, at most 1000 per request");
+        }
+    }
+
+    // intents older than olderThanSeconds, i.e. storage operations that should have finished by now
+    public List<FileIntent> getPendingIntents(int olderThanSeconds, int limit) {
+        return fileIntentRepository.findCreatedBefore(LocalDateTime.now().minusSeconds(olderThanSeconds),
+                Limit.of(Math.min(Math.max(limit, 1), 1000)));
+    }
+
+    // metadata and access check for a whole selection in one query, in request order, the rest left out
+    public List<FileMetadata> getAccessibleFiles(List<Integer> ids, String username) {
+        checkBatchSize(ids);
+        if (ids.isEmpty() || username == null || username.isBlank()) {
+            return List.of();
+        }
+        Map<Integer, FileMetadata> files = repository.findAccessible(ids, username).stream()
+                .collect(Collectors.toMap(FileMetadata::getId, Function.identity()));
+        return ids.stream()
+                .distinct()
+                .map(files::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // which of ids still have a metadata row, for the storage scan
+    public List<Integer> getExistingFileIds(List<Integer> ids) {
+        checkBatchSize(ids);
+        return ids.isEmpty() ? List.of() : repository.findExistingIds(ids);
+    }
+
     public List<FileMetadata> getFilesByOwner(String owner) {
-        return repository.findByOwner(owner);
+        return repository.findByOwnerAndStatus(owner, FileStatus.COMMITTED);
+    }
+
+    public Window<FileMetadata> getFilesByOwner(String owner, ScrollPosition position, Limit limit) {
+        return repository.findByOwnerAndStatus(owner, FileStatus.COMMITTED, position, limit,
+                Sort.by(Sort.Direction.DESC, "id"));
     }
 
     public List<FileMetadata> getByTag(String tag) {
         return repository.findByTag(tag);
     }
+
+    // files username can access that carry all (or any) of tags, keyset paginated by id
+    public Window<FileMetadata> getFilesByTags(List<String> tags, TagMatch mode, String username,
+                                               ScrollPosition position, Limit limit) {
+        Set<String> distinctTags = tags == null ? Set.of() : new HashSet<>(tags);
+        if (distinctTags.isEmpty() || username == null || username.isBlank()) {
+            return Window.from(List.of(), ScrollPosition::offset, false);
+        }
+
+        int afterId = Integer.MAX_VALUE;
+        if (position instanceof KeysetScrollPosition keyset && keyset.getKeys().get("id") instanceof Number id) {
+            afterId = id.intValue();
+        }
+        long required = mode == TagMatch.ANY ? 1 : distinctTags.size();
+
+        // one extra row tells whether there is a next page
+        List<FileMetadata> files = repository.findByTags(distinctTags, required, username, afterId,
+                Limit.of(limit.max() + 1));
+        boolean hasNext = files.size() > limit.max();
+        List<FileMetadata> page = hasNext ? files.subList(0, limit.max()) : files;
+        return Window.from(page, index -> ScrollPosition.forward(Map.of("id", page.get(index).getId())), hasNext);
+    }
+
+    public List<TagCount> getTagCounts(String owner) {
+        return repository.countTagsByOwner(owner);
+    }
 }
 
@@ -0,0 +1,60 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.repository.ContentBlobRepository;
+import com.anthonydaniel.fileflow.metadata.service.ContentBlobService;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ContentBlobTest {
+
+    private static final String HASH = "a".repeat(64);
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private ContentBlobService contentBlobService;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    @Test
+    public void testBlobIsReferenceCountedAndCollectedOnlyWhenUnreferenced() {
+        Integer first = metadataService.saveMetadata("a.bin", 5L, "alice", List.of(), HASH).getId();
+        Integer second = metadataService.saveMetadata("b.bin", 5L, "bob", List.of(), HASH).getId();
+        assertEquals(2, contentBlobRepository.findById(HASH).orElseThrow().getRefCount());
+
+        metadataService.deleteMetadata(first);
+        assertEquals(1, contentBlobRepository.findById(HASH).orElseThrow().getRefCount());
+        assertTrue(contentBlobService.claimReleased(-60, 100).isEmpty());
+
+        metadataService.deleteMetadataBatch(List.of(second));
+        assertEquals(0, contentBlobRepository.findById(HASH).orElseThrow().getRefCount());
+        assertEquals(List.of(HASH), contentBlobService.claimReleased(-60, 100));
+
+        // while it is being deleted nobody can take a new reference, the file gets an object of its own
+        assertNull(metadataService.saveMetadata("c.bin", 5L, "carol", List.of(), HASH).getContentHash());
+        assertEquals(0, contentBlobRepository.findById(HASH).orElseThrow().getRefCount());
+
+        assertEquals(1, contentBlobService.delete(List.of(HASH)));
+        assertTrue(contentBlobService.getExisting(List.of(HASH)).isEmpty());
+        assertEquals(HASH, metadataService.saveMetadata("c.bin", 5L, "carol", List.of(), HASH).getContentHash());
+    }
+
+    @Test
+    public void testFailedSaveRollsBackTheBlobReference() {
+        String hash = "f".repeat(64);
+        metadataService.saveMetadata("kept.bin", 5L, "alice", List.of(), hash);
+
+        // fileName is required, the row can't be stored
+        assertThrows(RuntimeException.class, () -> metadataService.saveMetadata(null, 5L, "alice", List.of(), hash));
+        assertEquals(1, contentBlobRepository.findById(hash).orElseThrow().getRefCount());
+    }
+}
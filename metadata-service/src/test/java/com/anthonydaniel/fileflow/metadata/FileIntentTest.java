@@ -0,0 +1,137 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileDeletion;
+import com.anthonydaniel.fileflow.metadata.model.FileIntent;
+import com.anthonydaniel.fileflow.metadata.model.FileIntentAction;
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import com.anthonydaniel.fileflow.metadata.service.FileShareService;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class FileIntentTest {
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileShareService fileShareService;
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Test
+    public void testUploadAndDeleteGoThroughOutbox() {
+        FileMetadata saved = metadataService.saveMetadata("outbox.txt", 1L, "outbox-owner", List.of());
+        Integer id = saved.getId();
+
+        assertEquals(FileStatus.PENDING, status(id));
+        assertTrue(metadataService.getFilesByOwner("outbox-owner").isEmpty());
+        assertEquals(FileIntentAction.UPLOAD, intentFor(id).getAction());
+
+        assertEquals(1, metadataService.commitMetadata(List.of(id)));
+        assertEquals(List.of(id), ids(metadataService.getFilesByOwner("outbox-owner")));
+        assertTrue(pendingIds().stream().noneMatch(id::equals));
+        // a late second commit doesn't touch the row again
+        assertEquals(0, metadataService.commitMetadata(List.of(id)));
+
+        metadataService.beginDelete(id);
+        assertTrue(metadataService.getFilesByOwner("outbox-owner").isEmpty());
+        assertEquals(FileIntentAction.DELETE, intentFor(id).getAction());
+
+        assertTrue(metadataService.deleteMetadata(id));
+        assertTrue(pendingIds().stream().noneMatch(id::equals));
+        assertFalse(metadataService.getExistingFileIds(List.of(id)).contains(id));
+    }
+
+    @Test
+    public void testUploadSessionIsKeptOnTheUploadIntent() {
+        Integer id = metadataService.saveMetadata("session.bin", 10L, "session-owner", List.of()).getId();
+
+        assertTrue(metadataService.attachUploadSession(id, "3f1c2a9e-session", "upload-1"));
+        assertEquals("3f1c2a9e-session", intentFor(id).getSessionId());
+        assertEquals("upload-1", intentFor(id).getUploadId());
+
+        // nothing to attach to once the upload is committed
+        metadataService.commitMetadata(List.of(id));
+        assertFalse(metadataService.attachUploadSession(id, "3f1c2a9e-session", "upload-1"));
+    }
+
+    @Test
+    public void testBulkDeleteChecksAccessAndRemovesEverything() {
+        Integer own = committed("bulk-owner", "a", "b");
+        Integer shared = committed("bulk-other", "a");
+        Integer foreign = committed("bulk-other");
+        fileShareService.shareFile(shared, "bulk-owner", "bulk-other");
+        fileShareService.shareFile(own, "bulk-friend", "bulk-owner");
+
+        List<FileDeletion> deletions = metadataService.beginDeleteBatch(List.of(foreign, own, -1, shared), "bulk-owner");
+
+        assertEquals(List.of(foreign, own, -1, shared), deletions.stream().map(FileDeletion::fileId).toList());
+        assertEquals("Access denied", deletions.get(0).error());
+        assertEquals(own, deletions.get(1).file().getId());
+        assertEquals("File not found", deletions.get(2).error());
+        assertEquals(shared, deletions.get(3).file().getId());
+        assertEquals(FileStatus.DELETING, status(own));
+        assertEquals(FileStatus.COMMITTED, status(foreign));
+        assertEquals(FileIntentAction.DELETE, intentFor(own).getAction());
+
+        assertEquals(2, metadataService.deleteMetadataBatch(List.of(own, shared)));
+        assertEquals(List.of(foreign), metadataService.getExistingFileIds(List.of(own, shared, foreign)));
+        assertTrue(pendingIds().stream().noneMatch(id -> id.equals(own) || id.equals(shared)));
+    }
+
+    @Test
+    public void testFilesBeingDeletedOrUploadedAreNotServed() {
+        Integer deleting = committed("gone-owner");
+        fileShareService.shareFile(deleting, "gone-friend", "gone-owner");
+        Integer pending = metadataService.saveMetadata("pending.txt", 1L, "gone-owner", List.of()).getId();
+
+        metadataService.beginDelete(deleting);
+
+        // download resolves metadata and then checks access, both have to fail
+        assertThrows(RuntimeException.class, () -> metadataService.getMetadataById(deleting));
+        assertThrows(RuntimeException.class, () -> metadataService.getMetadataById(pending));
+        assertTrue(metadataService.findMetadataById(pending).isEmpty());
+        assertFalse(fileShareService.hasFileAccess(deleting, "gone-owner"));
+        assertFalse(fileShareService.hasFileAccess(deleting, "gone-friend"));
+        assertFalse(fileShareService.hasFileAccess(pending, "gone-owner"));
+        assertThrows(RuntimeException.class, () -> fileShareService.shareFile(pending, "gone-friend", "gone-owner"));
+    }
+
+    private Integer committed(String owner, String... tags) {
+        Integer id = metadataService.saveMetadata("bulk.txt", 1L, owner, List.of(tags)).getId();
+        metadataService.commitMetadata(List.of(id));
+        return id;
+    }
+
+    private FileStatus status(Integer id) {
+        return repository.findById(Long.valueOf(id)).orElseThrow().getStatus();
+    }
+
+    private FileIntent intentFor(Integer fileId) {
+        return metadataService.getPendingIntents(-60, 1000).stream()
+                .filter(intent -> intent.getFile().getId().equals(fileId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<Integer> pendingIds() {
+        return metadataService.getPendingIntents(-60, 1000).stream().map(intent -> intent.getFile().getId()).toList();
+    }
+
+    private List<Integer> ids(List<FileMetadata> files) {
+        return files.stream().map(FileMetadata::getId).toList();
+    }
+}
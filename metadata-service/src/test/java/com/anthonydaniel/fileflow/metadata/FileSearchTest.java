@@ -0,0 +1,74 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import com.anthonydaniel.fileflow.metadata.service.FileShareService;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// H2 has no pg_trgm, so this covers the substring fallback searchFiles uses without it
+@SpringBootTest
+public class FileSearchTest {
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileShareService fileShareService;
+
+    @Test
+    public void testSearchFallsBackToSubstringMatching() {
+        Integer report = save("Quarterly_Report.pdf", "searcher", FileStatus.COMMITTED);
+        Integer draft = save("report-draft.docx", "searcher", FileStatus.COMMITTED);
+        Integer shared = save("team report.txt", "search-other", FileStatus.COMMITTED);
+        save("report-hidden.txt", "search-other", FileStatus.COMMITTED);
+        save("report-pending.txt", "searcher", FileStatus.PENDING);
+        save("100%_done.txt", "searcher", FileStatus.COMMITTED);
+        fileShareService.shareFile(shared, "searcher", "search-other");
+
+        Window<FileMetadata> first = metadataService.searchFiles(" REPORT ", "searcher", ScrollPosition.keyset(),
+                Limit.of(2));
+        assertEquals(List.of(shared, draft), ids(first));
+        assertTrue(first.hasNext());
+
+        Window<FileMetadata> second = metadataService.searchFiles("report", "searcher",
+                first.positionAt(first.size() - 1), Limit.of(2));
+        assertEquals(List.of(report), ids(second));
+        assertFalse(second.hasNext());
+
+        // LIKE wildcards in the query are matched literally
+        assertTrue(metadataService.searchFiles("_", "searcher", ScrollPosition.keyset(), Limit.of(10))
+                .stream().allMatch(file -> file.getFileName().contains("_")));
+        assertEquals(1, metadataService.searchFiles("0%", "searcher", ScrollPosition.keyset(), Limit.of(10)).size());
+    }
+
+    private Integer save(String fileName, String owner, FileStatus status) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setFileName(fileName);
+        metadata.setFileSize(1L);
+        metadata.setOwner(owner);
+        metadata.setUploadDate(LocalDateTime.now());
+        metadata.setStatus(status);
+        return repository.save(metadata).getId();
+    }
+
+    private List<Integer> ids(Window<FileMetadata> window) {
+        return window.stream().map(FileMetadata::getId).toList();
+    }
+}
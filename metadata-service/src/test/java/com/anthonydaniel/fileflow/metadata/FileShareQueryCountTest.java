@@ -0,0 +1,78 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import com.anthonydaniel.fileflow.metadata.service.FileShareService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureHttpGraphQlTester;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureHttpGraphQlTester
+public class FileShareQueryCountTest {
+
+    private static final String SHARED_WITH_ME = """
+            query SharedWithMe($username: String!) {
+                getFilesSharedWithMe(username: $username) {
+                    shareId
+                    file { id fileName tags }
+                }
+            }""";
+
+    @Autowired
+    private HttpGraphQlTester graphQlTester;
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Autowired
+    private FileShareService fileShareService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testStatementCountDoesNotGrowWithShares() {
+        long fewShares = statementsForSharedWithMe("few", 3);
+        long manyShares = statementsForSharedWithMe("many", 40);
+
+        // shares + files + tags, one statement each
+        assertEquals(3, fewShares);
+        assertEquals(fewShares, manyShares);
+    }
+
+    private long statementsForSharedWithMe(String username, int shares) {
+        for (int i = 0; i < shares; i++) {
+            FileMetadata metadata = new FileMetadata();
+            metadata.setFileName(username + i + ".txt");
+            metadata.setFileSize(1L);
+            metadata.setOwner("owner");
+            metadata.setTags(Set.of("t1", "t2"));
+            fileShareService.shareFile(repository.save(metadata).getId(), username, "owner");
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<String> tags = graphQlTester.document(SHARED_WITH_ME)
+                .variable("username", username)
+                .execute()
+                .path("getFilesSharedWithMe[*].file.tags[*]")
+                .entityList(String.class)
+                .get();
+        assertEquals(shares * 2, tags.size());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,76 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileAccess;
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.FileStatus;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import com.anthonydaniel.fileflow.metadata.service.FileShareService;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class FileShareServiceTest {
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Autowired
+    private FileShareService fileShareService;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Test
+    public void testHasFileAccessBatch() {
+        Integer owned = save("mine.txt", "bob").getId();
+        Integer shared = save("shared.txt", "alice").getId();
+        Integer sharedWithOther = save("other.txt", "alice").getId();
+        fileShareService.shareFile(shared, "bob", "alice");
+        fileShareService.shareFile(sharedWithOther, "carol", "alice");
+
+        List<FileAccess> access = fileShareService.hasFileAccessBatch(
+                List.of(sharedWithOther, owned, -1, shared), "bob");
+
+        assertEquals(List.of(
+                new FileAccess(sharedWithOther, "alice", false),
+                new FileAccess(owned, "bob", true),
+                new FileAccess(-1, null, false),
+                new FileAccess(shared, "alice", true)), access);
+        assertTrue(fileShareService.hasFileAccess(shared, "bob"));
+        assertFalse(fileShareService.hasFileAccess(sharedWithOther, "bob"));
+    }
+
+    @Test
+    public void testAccessibleFilesInRequestOrder() {
+        Integer owned = save("mine.txt", "dave").getId();
+        Integer shared = save("shared.txt", "erin").getId();
+        Integer notShared = save("other.txt", "erin").getId();
+        FileMetadata pending = save("pending.txt", "dave");
+        pending.setStatus(FileStatus.PENDING);
+        repository.save(pending);
+        fileShareService.shareFile(shared, "dave", "erin");
+
+        List<Integer> ids = metadataService.getAccessibleFiles(
+                List.of(shared, notShared, -1, pending.getId(), owned), "dave").stream()
+                .map(FileMetadata::getId)
+                .toList();
+
+        assertEquals(List.of(shared, owned), ids);
+    }
+
+    private FileMetadata save(String fileName, String owner) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setFileName(fileName);
+        metadata.setFileSize(1L);
+        metadata.setOwner(owner);
+        return repository.save(metadata);
+    }
+}
@@ -0,0 +1,67 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureHttpGraphQlTester;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureHttpGraphQlTester
+public class MetadataPaginationTest {
+
+    private static final String FILES_BY_OWNER = """
+            query FilesByOwner($owner: String!, $first: Int, $after: String) {
+                filesByOwner(owner: $owner, first: $first, after: $after) {
+                    edges { cursor node { id fileName } }
+                    pageInfo { hasNextPage endCursor }
+                }
+            }""";
+
+    @Autowired
+    private HttpGraphQlTester graphQlTester;
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Test
+    public void testFilesByOwnerPagesWithCursor() {
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, save("page" + i + ".txt", "pager").getId());
+        }
+        save("other.txt", "someone-else");
+
+        List<Integer> seen = new ArrayList<>();
+        String after = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            var response = graphQlTester.document(FILES_BY_OWNER)
+                    .variable("owner", "pager")
+                    .variable("first", 2)
+                    .variable("after", after)
+                    .execute();
+            seen.addAll(response.path("filesByOwner.edges[*].node.id").entityList(Integer.class).get());
+            hasNextPage = response.path("filesByOwner.pageInfo.hasNextPage").entity(Boolean.class).get();
+            after = response.path("filesByOwner.pageInfo.endCursor").entity(String.class).get();
+        }
+
+        // newest first, no gaps or repeats across pages
+        assertEquals(expected, seen);
+    }
+
+    private FileMetadata save(String fileName, String owner) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setFileName(fileName);
+        metadata.setFileSize(1L);
+        metadata.setOwner(owner);
+        return repository.save(metadata);
+    }
+}
@@ -21,7 +21,7 @@ public class MetadataRepositoryTest {
     public void testSaveMetadata() {
         FileMetadata metadata = new FileMetadata();
         metadata.setFileName("example.txt");
-        metadata.setFileSize(1024);
+        metadata.setFileSize(1024L);
         metadata.setOwner("user_1");
         metadata.setUploadDate(LocalDateTime.now());
 
@@ -29,7 +29,7 @@ public class MetadataRepositoryTest {
 
         assertNotNull(savedMetadata.getId());
         assertEquals("example.txt", savedMetadata.getFileName());
-        assertEquals(1024, savedMetadata.getFileSize());
+        assertEquals(1024L, savedMetadata.getFileSize());
         assertEquals("user_1", savedMetadata.getOwner());
         assertNotNull(savedMetadata.getUploadDate());
 
@@ -0,0 +1,53 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileInput;
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+public class MetadataServiceTest {
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testSaveMetadataBatchIsJdbcBatched() {
+        List<FileInput> inputs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            inputs.add(new FileInput("file" + i + ".txt", (long) i, "bob", List.of("a", "b")));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<FileMetadata> saved = metadataService.saveMetadataBatch(inputs);
+
+        assertEquals(300, saved.size());
+        assertEquals("file299.txt", saved.get(299).getFileName());
+        assertEquals(Set.of("a", "b"), saved.get(0).getTags());
+        assertEquals(300, saved.stream().map(FileMetadata::getId).distinct().count());
+        // 300 rows + 600 tags one at a time would be 900+ statements
+        assertTrue(statistics.getPrepareStatementCount() < 30,
+                "statements prepared: " + statistics.getPrepareStatementCount());
+    }
+}
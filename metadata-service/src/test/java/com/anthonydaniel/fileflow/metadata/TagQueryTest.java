@@ -0,0 +1,72 @@
+package com.anthonydaniel.fileflow.metadata;
+
+import com.anthonydaniel.fileflow.metadata.model.FileMetadata;
+import com.anthonydaniel.fileflow.metadata.model.TagCount;
+import com.anthonydaniel.fileflow.metadata.model.TagMatch;
+import com.anthonydaniel.fileflow.metadata.repository.MetadataRepository;
+import com.anthonydaniel.fileflow.metadata.service.FileShareService;
+import com.anthonydaniel.fileflow.metadata.service.MetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TagQueryTest {
+
+    @Autowired
+    private MetadataRepository repository;
+
+    @Autowired
+    private MetadataService metadataService;
+
+    @Autowired
+    private FileShareService fileShareService;
+
+    @Test
+    public void testFilesByTagsAllAnyAndScoping() {
+        Integer both = save("tagger", "red", "blue").getId();
+        Integer red = save("tagger", "red").getId();
+        Integer sharedBlue = save("other-tagger", "blue").getId();
+        save("other-tagger", "red", "blue");
+        fileShareService.shareFile(sharedBlue, "tagger", "other-tagger");
+
+        assertEquals(List.of(both), ids(metadataService.getFilesByTags(List.of("red", "blue"), TagMatch.ALL,
+                "tagger", ScrollPosition.keyset(), Limit.of(10))));
+        assertEquals(List.of(sharedBlue, red, both), ids(metadataService.getFilesByTags(List.of("red", "blue"),
+                TagMatch.ANY, "tagger", ScrollPosition.keyset(), Limit.of(10))));
+
+        // second page continues after the last id of the first
+        Window<FileMetadata> first = metadataService.getFilesByTags(List.of("red", "blue"), TagMatch.ANY,
+                "tagger", ScrollPosition.keyset(), Limit.of(2));
+        assertTrue(first.hasNext());
+        Window<FileMetadata> second = metadataService.getFilesByTags(List.of("red", "blue"), TagMatch.ANY,
+                "tagger", first.positionAt(1), Limit.of(2));
+        assertEquals(List.of(both), ids(second));
+        assertFalse(second.hasNext());
+
+        assertEquals(List.of(new TagCount("red", 2), new TagCount("blue", 1)), metadataService.getTagCounts("tagger"));
+    }
+
+    private List<Integer> ids(Window<FileMetadata> window) {
+        return window.getContent().stream().map(FileMetadata::getId).toList();
+    }
+
+    private FileMetadata save(String owner, String... tags) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setFileName("tagged.txt");
+        metadata.setFileSize(1L);
+        metadata.setOwner(owner);
+        metadata.setTags(Set.of(tags));
+        return repository.save(metadata);
+    }
+}